@@ -0,0 +1,32 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Nodes of the search tree bucketed by the number of action points left
+public class ActionPointLevels {
+    private final List<IntList> buckets = new ArrayList<>(16);
+    private int size;
+
+    public void add(int node, int actionPoints) {
+        while (buckets.size() <= actionPoints) buckets.add(new IntList(64));
+        buckets.get(actionPoints).add(node);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Nullable
+    public int[] pollHighest() {
+        for (int ap = buckets.size() - 1; ap >= 0; ap--) {
+            IntList bucket = buckets.get(ap);
+            if (!bucket.isEmpty()) {
+                int[] result = bucket.toArray();
+                bucket.clear();
+                size -= result.length;
+                return result;
+            }
+        }
+        return null;
+    }
+}
@@ -19,6 +19,9 @@ public class Army {
 
     private final Map<TrooperType, Pair<Integer, TurnLocalData>> turnLocalData = new HashMap<>();
 
+    private Speculation speculation;
+    private final WarmUp warmUp = new WarmUp(this);
+
     public Army(@NotNull World world) {
         board = new Board(world);
         coeff = Const.valueOf(board.kind.toString());
@@ -124,19 +127,37 @@ public class Army {
         throw new IllegalStateException("Impossible as it may seem, there are no free points nearby: " + p);
     }
 
+    // Speculative searches compute situations in background, see Speculation
     @NotNull
-    public Point getOrUpdateWayPoint(@NotNull Situation situation) {
+    public synchronized Point getOrUpdateWayPoint(@NotNull Situation situation) {
+        curWayPoint = nextWayPoint(situation);
+        return wayPoints.get(curWayPoint);
+    }
+
+    // The way point as getOrUpdateWayPoint would return it, but without moving on to it, for worlds which may never happen
+    @NotNull
+    public synchronized Point getWayPoint(@NotNull Situation situation) {
+        return wayPoints.get(nextWayPoint(situation));
+    }
+
+    private int nextWayPoint(@NotNull Situation situation) {
         Collection<Warrior> allies = situation.allies;
         Point wayPoint = wayPoints.get(curWayPoint);
         int curDist = 0;
         for (Warrior ally : allies) {
             curDist += ally.point.manhattanDistance(wayPoint);
         }
-        if (curDist < 4 * allies.size()) {
-            curWayPoint = (curWayPoint + 1) % wayPoints.size();
-            wayPoint = wayPoints.get(curWayPoint);
-        }
-        return wayPoint;
+        return curDist < 4 * allies.size() ? (curWayPoint + 1) % wayPoints.size() : curWayPoint;
+    }
+
+    @NotNull
+    public List<Point> getWayPoints() {
+        return Collections.unmodifiableList(wayPoints);
+    }
+
+    @NotNull
+    public WarmUp getWarmUp() {
+        return warmUp;
     }
 
     @NotNull
@@ -153,6 +174,18 @@ public class Army {
         this.isOrderComplete = true;
     }
 
+    @Nullable
+    public Speculation takeSpeculation() {
+        Speculation result = speculation;
+        speculation = null;
+        return result;
+    }
+
+    public void setSpeculation(@NotNull Speculation speculation) {
+        if (this.speculation != null) this.speculation.cancel();
+        this.speculation = speculation;
+    }
+
     @Nullable
     public TurnLocalData loadTurnLocalData(int moveIndex, @NotNull TrooperType type) {
         Pair<Integer, TurnLocalData> pair = turnLocalData.get(type);
@@ -0,0 +1,72 @@
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Same order as the anytime search in ExhaustiveSearch, but of each action point level only the best beamWidth positions
+// are expanded
+public class BeamSearch {
+    private BeamSearch() {}
+
+    public static int run(@NotNull Situation situation, @NotNull SearchTree tree, int beamWidth) {
+        ActionPointLevels levels = new ActionPointLevels();
+        levels.add(0, tree.actionPoints(0));
+        int best = -1;
+        double bestValue = -1e100;
+        boolean parallel = ParallelEvaluation.isEnabled(situation);
+        int batch = parallel ? ParallelFrontier.batchSize() : 1;
+        int[] level;
+        while ((level = levels.pollHighest()) != null) {
+            final double[] values = new double[level.length];
+            for (int from = 0; from < level.length; from += batch) {
+                int to = Math.min(from + batch, level.length);
+                if (parallel) {
+                    double[] batchValues = ParallelEvaluation.evaluate(situation, tree, Arrays.copyOfRange(level, from, to));
+                    System.arraycopy(batchValues, 0, values, from, to - from);
+                } else {
+                    int node = level[from];
+                    values[from] = ExhaustiveSearch.isCutOff(situation, tree, node) ? Double.NaN :
+                            situation.scorer.evaluate(tree.position(node));
+                }
+                for (int i = from; i < to; i++) {
+                    if (values[i] > bestValue) {
+                        bestValue = values[i];
+                        best = level[i];
+                    }
+                }
+
+                if (situation.effort.check(to - from, level.length - to + levels.size())) {
+                    // Positions of this level are sorted by value and the best so far is compared to the rest, all by the
+                    // values of the new level
+                    for (int i = 0; i < to; i++) {
+                        if (!Double.isNaN(values[i])) values[i] = situation.scorer.evaluate(tree.position(level[i]));
+                    }
+                    bestValue = situation.scorer.evaluate(tree.position(best));
+                }
+            }
+
+            if (level.length > beamWidth) {
+                Integer[] sorted = new Integer[level.length];
+                for (int i = 0; i < level.length; i++) sorted[i] = i;
+                // Stable, so of equal positions the ones found earlier are preferred, as everywhere else
+                Arrays.sort(sorted, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer o1, Integer o2) {
+                        return Double.compare(values[o2], values[o1]);
+                    }
+                });
+                int[] kept = new int[beamWidth];
+                for (int i = 0; i < beamWidth; i++) kept[i] = level[sorted[i]];
+                level = kept;
+            }
+
+            for (int node : level) {
+                if (node != 0 && situation.deadline.isExpired()) continue;
+                int from = tree.size();
+                TransitionFinder.expand(situation, tree, node);
+                for (int child = from, size = tree.size(); child < size; child++) {
+                    levels.add(child, tree.actionPoints(child));
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -1,8 +1,11 @@
 import model.CellType;
 import model.Direction;
+import model.TrooperStance;
+import model.TrooperType;
 import model.World;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class Board {
     public enum Kind {
@@ -42,17 +45,24 @@ public class Board {
         public void saveDistanceMap(@NotNull Map<Point, Integer> dist) {}
     }
 
-    public static int WIDTH = -1;
-    public static int HEIGHT = -1;
+    // Every map of the game is this size, so that the static tables of packed positions, hashes and bitboards can be sized by it
+    public static final int WIDTH = 30;
+    public static final int HEIGHT = 20;
 
     public final Kind kind;
     private final List<Point> passable = new ArrayList<>(WIDTH * HEIGHT);
+    private final PointSet passableSet = new PointSet();
     private final Set<Point> obstacles = new PointSet();
-    private final Map<Point, Map<Point, Integer>> distances = new PointMap<>();
-
-    private final Queue<Point> queue = new ArrayDeque<>(WIDTH * HEIGHT);
+    // Indexed by Point.index(). Shared by search threads: whoever computes a distance map first publishes it
+    private final AtomicReferenceArray<Map<Point, Integer>> distances = new AtomicReferenceArray<>(WIDTH * HEIGHT);
+    // Indexed by (type, point, stance) of the viewer, shared in the same way. Visibility of cells never changes, so the first
+    // world is as good as any other for it
+    private final AtomicReferenceArray<PointSet> visible =
+            new AtomicReferenceArray<>(TrooperType.values().length * WIDTH * HEIGHT * TrooperStance.values().length);
+    private final World world;
 
     public Board(@NotNull World world) {
+        this.world = world;
         CellType[][] cells = world.getCells();
         int n = cells.length;
         int m = cells[0].length;
@@ -66,6 +76,7 @@ public class Board {
                 Point point = Point.create(i, j);
                 if (cells[i][j] == CellType.FREE) {
                     passable.add(point);
+                    passableSet.add(point);
                 } else {
                     //noinspection ConstantConditions
                     obstacles.add(point);
@@ -79,6 +90,16 @@ public class Board {
         return passable;
     }
 
+    // A copy, to be changed by the caller
+    @NotNull
+    public PointSet passableSet() {
+        return passableSet.copy();
+    }
+
+    public int passableCount() {
+        return passable.size();
+    }
+
     private int worldMapHashCode(@NotNull CellType[][] cells) {
         int result = 0;
         for (CellType[] row : cells) {
@@ -95,14 +116,35 @@ public class Board {
 
     @Nullable
     public Integer distance(@NotNull Point from, @NotNull Point to) {
-        Map<Point, Integer> map = distances.get(from);
+        Map<Point, Integer> map = distances.get(from.index());
         if (map == null) {
             map = findDistances(from);
-            distances.put(from, map);
+            if (!distances.compareAndSet(from.index(), null, map)) {
+                map = distances.get(from.index());
+            }
         }
         return map.get(to);
     }
 
+    // Passable cells seen by a trooper of this type at the point in the stance, objects in them are assumed to be standing
+    @NotNull
+    public PointSet visibleFrom(@NotNull TrooperType type, double visionRange, @NotNull Point viewer, @NotNull TrooperStance stance) {
+        int index = (type.ordinal() * WIDTH * HEIGHT + viewer.index()) * TrooperStance.values().length + stance.ordinal();
+        PointSet result = visible.get(index);
+        if (result == null) {
+            result = new PointSet();
+            for (Point object : passable) {
+                if (world.isVisible(visionRange, viewer.x, viewer.y, stance, object.x, object.y, TrooperStance.STANDING)) {
+                    result.add(object);
+                }
+            }
+            if (!visible.compareAndSet(index, null, result)) {
+                result = visible.get(index);
+            }
+        }
+        return result;
+    }
+
     @Nullable
     public List<Point> findPath(@NotNull Point from, @NotNull final Point to) {
         final Map<Point, Point> prev = new PointMap<>();
@@ -156,7 +198,7 @@ public class Board {
         controller.saveDistanceMap(dist);
 
         dist.put(from, 0);
-        queue.clear();
+        Queue<Point> queue = new ArrayDeque<>(WIDTH * HEIGHT);
         queue.add(from);
 
         while (!queue.isEmpty()) {
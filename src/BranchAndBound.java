@@ -0,0 +1,66 @@
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+// Best-first search by Scorer.estimate: positions are expanded in order of their upper bounds, and those which can't beat
+// the best value found so far are never expanded. Since the bounds are admissible, the best value is the same as the
+// exhaustive search's
+public class BranchAndBound {
+    private BranchAndBound() {}
+
+    public static int run(@NotNull Situation situation, @NotNull final SearchTree tree) {
+        final double[][] bounds = {new double[1024]};
+        PriorityQueue<Integer> queue = new PriorityQueue<>(1024, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int result = Double.compare(bounds[0][o2], bounds[0][o1]);
+                return result != 0 ? result : o1 - o2;
+            }
+        });
+
+        Scorer.Estimate root = situation.scorer.estimate(tree.position(0));
+        boolean parallel = ParallelEvaluation.isEnabled(situation);
+        int best = 0;
+        double bestValue = root.value;
+        bounds[0][0] = root.bound;
+        queue.add(0);
+
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            if (bounds[0][node] <= bestValue || situation.deadline.isExpired()) break;
+
+            int from = tree.size();
+            final int parent = node;
+            // Positions aren't found in the order of decreasing action points here, so equal ones found later may be better
+            new TransitionFinder(situation, tree.position(node), tree.action(node)) {
+                @Override
+                protected void add(@NotNull Position next, int action) {
+                    tree.addIfMoreActionPoints(next, action, parent);
+                }
+            }.run();
+
+            int size = tree.size();
+            Scorer.Estimate[] estimates = parallel ? ParallelEvaluation.estimate(situation, tree, range(from, size)) : null;
+            for (int child = from; child < size; child++) {
+                Scorer.Estimate estimate = parallel ? estimates[child - from] : situation.scorer.estimate(tree.position(child));
+                if (estimate.value > bestValue) {
+                    bestValue = estimate.value;
+                    best = child;
+                }
+                if (child >= bounds[0].length) bounds[0] = Arrays.copyOf(bounds[0], 2 * child);
+                bounds[0][child] = estimate.bound;
+                if (estimate.bound > bestValue) queue.add(child);
+            }
+        }
+        return best;
+    }
+
+    @NotNull
+    private static int[] range(int from, int to) {
+        int[] result = new int[to - from];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = from + i;
+        }
+        return result;
+    }
+}
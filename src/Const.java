@@ -49,4 +49,50 @@ public enum Const {
     public double leaderDistanceToWayPoint = 1;
     public double leaderFarAwayTeammates = 100;
     public double leaderCriticalDistanceToAllies = 5;
+
+    // Damage on the next turn is found by a search of each enemy's best response rather than guessed, see Scorer.enemyResponse.
+    // The searches of one situation may take that long, after that the guess is used
+    public boolean enemyResponse = false;
+    public long enemyResponseBudgetMillis = 30;
+
+    // Fights of at most that many troopers (of those seen) are solved that many turns ahead, trying only a few most promising
+    // outcomes of each turn, see Endgame. A turn is that of a single trooper, ours or not, so 3 is ours and the next two in the
+    // order of the fight. If it takes more than that share of the time left or needs more states, the usual search is used
+    public boolean endgame = false;
+    public int endgameTroopers = 4;
+    public int endgameTurns = 3;
+    public int endgameBranching = 4;
+    public double endgameShare = 0.5;
+    public int endgameMaxStates = 100000;
+
+    // Consecutive move() calls of the same trooper continue the plan of the first one while the world is as expected
+    public boolean reusePlans = true;
+    // The next trooper's turn is planned in background for the world expected after the current one's plan, see Speculation
+    public boolean speculativePlans = true;
+    // Caches of the board are filled in background between move() calls, see WarmUp
+    public boolean warmUp = true;
+
+    public Engine searchEngine = Engine.EXHAUSTIVE;
+    public Engine nestedSearchEngine = Engine.EXHAUSTIVE;
+    // If not null, the outer search is also run with this engine and the results are compared in the log, see SearchComparison
+    public Engine comparedSearchEngine = null;
+
+    // Off by default, since the strategy shares the machine with the game and the other players. If on, the outer search runs on
+    // ParallelFrontier.POOL, which has a limited number of threads
+    public boolean parallelSearch = false;
+    // The outer search drops the most expensive terms of the evaluation if it's going to miss the deadline, see Effort
+    public boolean adaptiveEffort = true;
+    // With less time than this left the outer search doesn't even start with nested searches, see Effort
+    public long fullEffortMillis = 60;
+    // Share of the time left which a nested search of the next ally's turn may take
+    public double nestedSearchShare = 0.5;
+    // Only this many best positions of each action point level are expanded further by Engine.BEAM. Maps where it loses too
+    // much against the exhaustive search (see comparedSearchEngine) override it in their constant, as CHEESER does above
+    public int beamWidth = 20;
+    // Moves and stance changes are explored as whole walks to each reachable cell and stance, see Walks
+    public boolean walks = false;
+    // Iterations in each worker of Engine.MONTE_CARLO, there are that many workers only if the search runs in parallel
+    public int monteCarloIterations = 1000;
+    public int monteCarloWorkers = 4;
+    public double monteCarloExploration = 1.0;
 }
@@ -0,0 +1,60 @@
+// Moment by which a search should give up and return the best it has found so far
+public final class Deadline {
+    public static final Deadline NONE = new Deadline(0L, null);
+
+    private final long nanoTime;
+    // Shares of a deadline expire with it when it's cancelled
+    private final Deadline parent;
+    private volatile boolean cancelled;
+
+    private Deadline(long nanoTime, @Nullable Deadline parent) {
+        this.nanoTime = nanoTime;
+        this.parent = parent;
+    }
+
+    @NotNull
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + millis * 1000000L, null);
+    }
+
+    public boolean isFinite() {
+        return this != NONE;
+    }
+
+    public boolean isExpired() {
+        return this != NONE && remainingNanos() <= 0;
+    }
+
+    // Expires this deadline and its shares right away, so that a search which is no longer needed returns as soon as it can
+    public void cancel() {
+        assert this != NONE : "Nothing to cancel";
+        cancelled = true;
+    }
+
+    private boolean isCancelled() {
+        return cancelled || parent != null && parent.isCancelled();
+    }
+
+    // Deadline by which the given share of the time left till this one will have passed
+    @NotNull
+    public Deadline share(double fraction) {
+        return this != NONE ? new Deadline(System.nanoTime() + (long) (remainingNanos() * fraction), this) : NONE;
+    }
+
+    // Deadline in that many milliseconds or this one if it's earlier, expires with this one when it's cancelled
+    @NotNull
+    public Deadline within(long millis) {
+        long nanoTime = System.nanoTime() + millis * 1000000L;
+        return new Deadline(this != NONE && this.nanoTime - nanoTime < 0 ? this.nanoTime : nanoTime, this);
+    }
+
+    public long remainingNanos() {
+        if (this == NONE) return Long.MAX_VALUE;
+        return isCancelled() ? 0L : nanoTime - System.nanoTime();
+    }
+
+    @Override
+    public String toString() {
+        return this != NONE ? remainingNanos() / 1000000 + "ms left" : "no deadline";
+    }
+}
@@ -0,0 +1,74 @@
+// How much of the evaluation the outer search can afford. It starts full, unless there's too little time left for that, and is
+// lowered a level at a time, as often as after every batch of positions, if the time spent per position so far says the positions
+// already queued won't all be evaluated before the deadline. Each level drops the next most expensive terms of Scorer along with those dropped by the levels before it
+public final class Effort {
+    public enum Level {
+        FULL,
+        // Nested searches: the next ally's turn and the enemies' responses
+        NO_NESTED_SEARCHES,
+        // Cells our troopers would be able to shoot at
+        NO_SHOOTABLE_POINTS,
+        // Everything the light version of a situation does without: who sees whom, cells seen on the way, enemy grenades
+        LIGHT
+    }
+
+    // Nested situations are always evaluated at the lowest level, they are a part of the evaluation of the outer one anyway
+    public static final Effort LIGHT = new Effort(Level.LIGHT, Deadline.NONE, false);
+
+    private final Deadline deadline;
+    private final boolean adaptive;
+    private volatile Level level;
+    // Measured since the level was set, only the search thread touches these
+    private long since;
+    private int evaluated;
+
+    private Effort(@NotNull Level level, @NotNull Deadline deadline, boolean adaptive) {
+        this.level = level;
+        this.deadline = deadline;
+        this.adaptive = adaptive;
+        this.since = System.nanoTime();
+    }
+
+    @NotNull
+    public static Effort adaptive(@NotNull Deadline deadline, long fullEffortMillis) {
+        Level level = deadline.remainingNanos() < fullEffortMillis * 1000000L ? Level.NO_NESTED_SEARCHES : Level.FULL;
+        return new Effort(level, deadline, true);
+    }
+
+    // Only drops to the lowest level once the deadline has expired
+    @NotNull
+    public static Effort full(@NotNull Deadline deadline) {
+        return new Effort(Level.FULL, deadline, false);
+    }
+
+    // Whether the terms of this level are not computed anymore
+    public boolean drops(@NotNull Level level) {
+        return this.level.compareTo(level) >= 0;
+    }
+
+    // Called by the search once it has evaluated that many more positions and has that many positions queued. Returns true if
+    // the level was lowered, values of positions evaluated before that are not comparable to the following ones
+    public boolean check(int evaluated, int queued) {
+        if (!deadline.isFinite() || level == Level.LIGHT) return false;
+        this.evaluated += evaluated;
+        long now = System.nanoTime();
+        if (deadline.isExpired()) {
+            // What's still evaluated after the deadline (see ExhaustiveSearch.isCutOff) should take as little as possible
+            level = Level.LIGHT;
+        } else if (adaptive && (double) (now - since) / this.evaluated * queued > deadline.remainingNanos()) {
+            level = Level.values()[level.ordinal() + 1];
+        } else {
+            return false;
+        }
+
+        Debug.log("Lowered effort to " + level + ", " + deadline);
+        since = now;
+        this.evaluated = 0;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return level.toString();
+    }
+}
@@ -0,0 +1,352 @@
+import model.TrooperStance;
+import model.TrooperType;
+
+import java.util.*;
+
+import static model.TrooperType.COMMANDER;
+
+// Solves a small fight several turns ahead by minimax. A turn of each trooper is one move of the game tree: its options are
+// the different outcomes of all it can do in a turn (where it ends up, in which stance, with what, and everyone's hitpoints),
+// of which only a few most promising ones are tried. Enemies are assumed to make their turns right after our trooper of the
+// same type. Leaves are valued by hitpoints and kills. Gives up if it can't be done within the budget of time and memory
+public class Endgame {
+    private static final double WIN = 1e6;
+    private static final TrooperStance[] STANCES = TrooperStance.values();
+
+    private static final int STANCE_SHIFT = Position.CELL_BITS;
+    private static final int HP_SHIFT = STANCE_SHIFT + Position.STANCE_BITS;
+    private static final int BONUS_SHIFT = HP_SHIFT + Position.HP_BITS;
+
+    // Troopers of the fight in a state of it and whose turn it is, the key of the memo
+    private static class State {
+        // Indexed by fighter: cell, stance, hitpoints and bonuses, see pack
+        private final int[] fighters;
+        // Index in the sequence of turns and how many turns are left to look ahead
+        private final int turn;
+        private final int depth;
+
+        private State(@NotNull int[] fighters, int turn, int depth) {
+            this.fighters = fighters;
+            this.turn = turn;
+            this.depth = depth;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) return false;
+            State that = (State) o;
+            return turn == that.turn && depth == that.depth && Arrays.equals(fighters, that.fighters);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Arrays.hashCode(fighters) * 31 + turn) * 31 + depth;
+        }
+    }
+
+    // Fighters after one of the ways a turn can be made, node is the position of the turn in its search tree
+    private static class Outcome {
+        private final int[] fighters;
+        private final double promise;
+        private final int node;
+
+        private Outcome(@NotNull int[] fighters, double promise, int node) {
+            this.fighters = fighters;
+            this.promise = promise;
+            this.node = node;
+        }
+    }
+
+    private final Situation situation;
+    private final Const coeff;
+    private final Deadline deadline;
+    // Our troopers (allies of the situation), then the enemies of the situation
+    private final List<Warrior> fighters = new ArrayList<>();
+    private final int allies;
+    // Fighters in the order they make turns, starting with our current trooper
+    private final int[] sequence;
+    private final Map<State, Double> memo = new HashMap<>();
+    private boolean exceeded;
+
+    private Endgame(@NotNull Situation situation) {
+        this.situation = situation;
+        this.coeff = situation.army.coeff;
+        this.deadline = situation.deadline.share(coeff.endgameShare);
+        this.fighters.addAll(situation.allies);
+        this.fighters.addAll(situation.enemies);
+        this.allies = situation.allies.size();
+        this.sequence = computeSequence();
+    }
+
+    // The best turn of the situation or null if the fight is not small enough or the budget has been exceeded
+    @Nullable
+    public static Pair<Position, List<Go>> solve(@NotNull Situation situation, @NotNull Position start) {
+        Const coeff = situation.army.coeff;
+        if (!coeff.endgame || situation.lightVersion || situation.enemies.isEmpty() || !situation.army.isOrderComplete()) {
+            return null;
+        }
+        int alive = start.allyHp.size() - start.allyHp.numberOfZeros() +
+                start.enemyHp.size() - start.enemyHp.numberOfZeros();
+        if (alive > coeff.endgameTroopers) return null;
+
+        return new Endgame(situation).run(start);
+    }
+
+    @NotNull
+    private int[] computeSequence() {
+        List<TrooperType> order = situation.army.getOrder();
+        IntList result = new IntList(fighters.size());
+        result.add(situation.self.index);
+        // Those of types which we don't have can make their turns any time, so expect the worst
+        for (EnemyWarrior enemy : situation.enemies) {
+            if (!order.contains(enemy.type)) result.add(allies + enemy.index);
+        }
+        int myIndex = order.indexOf(situation.self.type);
+        for (int i = 0; i < order.size(); i++) {
+            TrooperType type = order.get((myIndex + i) % order.size());
+            for (Warrior ally : situation.allies) {
+                if (i > 0 && ally.type == type) result.add(ally.index);
+            }
+            for (EnemyWarrior enemy : situation.enemies) {
+                if (enemy.type == type) result.add(allies + enemy.index);
+            }
+        }
+        return result.toArray();
+    }
+
+    @Nullable
+    private Pair<Position, List<Go>> run(@NotNull Position start) {
+        int[] initial = new int[fighters.size()];
+        for (Warrior ally : situation.allies) {
+            int bonuses = ally == situation.self ? start.bonuses : MakeTurn.computeBonusesBitSet(ally.trooper);
+            initial[ally.index] = pack(ally.point, ally.stance, start.allyHp.get(ally.index), bonuses);
+        }
+        for (EnemyWarrior enemy : situation.enemies) {
+            initial[allies + enemy.index] = pack(enemy.point, enemy.stance, start.enemyHp.get(enemy.index),
+                    MakeTurn.computeBonusesBitSet(enemy.trooper));
+        }
+
+        int[] team = new int[allies];
+        for (int i = 0; i < allies; i++) team[i] = i;
+        int[] opponents = new int[situation.enemies.size()];
+        for (int i = 0; i < opponents.length; i++) opponents[i] = allies + i;
+
+        SearchTree tree = SearchTree.arena(situation);
+        List<Outcome> outcomes = outcomes(situation, start, tree, initial, team, opponents);
+        if (outcomes == null) return null;
+        // Trees of the turns below are of the other kind, but paths are taken beforehand anyway
+        List<Position> positions = new ArrayList<>(outcomes.size());
+        List<List<Go>> paths = new ArrayList<>(outcomes.size());
+        for (Outcome outcome : outcomes) {
+            positions.add(tree.position(outcome.node));
+            paths.add(tree.pathTo(outcome.node));
+        }
+
+        int best = -1;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < outcomes.size(); i++) {
+            double value = value(outcomes.get(i).fighters, 1, coeff.endgameTurns - 1);
+            if (exceeded) return null;
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+
+        Debug.log(String.format("endgame: %.1f after %s (%d states)", bestValue, paths.get(best), memo.size()));
+        return new Pair<>(positions.get(best), paths.get(best));
+    }
+
+    // Value of the fight for us, turn is the index in the sequence of the next one who may make a turn
+    private double value(@NotNull int[] state, int turn, int depth) {
+        boolean oursAlive = false;
+        boolean theirsAlive = false;
+        for (int i = 0; i < state.length; i++) {
+            if (hp(state[i]) == 0) continue;
+            if (i < allies) oursAlive = true;
+            else theirsAlive = true;
+        }
+        if (!theirsAlive) return WIN + material(state);
+        if (!oursAlive) return -WIN + material(state);
+        if (depth == 0) return material(state);
+
+        while (hp(state[sequence[turn % sequence.length]]) == 0) turn++;
+        turn %= sequence.length;
+
+        State key = new State(state, turn, depth);
+        Double cached = memo.get(key);
+        if (cached != null) return cached;
+        if (exceeded || memo.size() >= coeff.endgameMaxStates || deadline.isExpired()) {
+            exceeded = true;
+            return 0;
+        }
+
+        int mover = sequence[turn];
+        List<Outcome> outcomes = outcomes(state, mover);
+        if (outcomes == null) {
+            exceeded = true;
+            return 0;
+        }
+
+        boolean ours = mover < allies;
+        double result = ours ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        for (Outcome outcome : outcomes) {
+            double value = value(outcome.fighters, turn + 1, depth - 1);
+            result = ours ? Math.max(result, value) : Math.min(result, value);
+        }
+
+        if (!exceeded) memo.put(key, result);
+        return result;
+    }
+
+    private double material(@NotNull int[] state) {
+        double result = 0;
+        for (int i = 0; i < state.length; i++) {
+            int hp = hp(state[i]);
+            double value = hp + (hp > 0 ? coeff.killEnemy : 0);
+            result += i < allies ? value : -value;
+        }
+        return result;
+    }
+
+    // Outcomes of the turn of the mover in the hypothetical situation where only alive troopers of the state are present
+    @Nullable
+    private List<Outcome> outcomes(@NotNull int[] state, int mover) {
+        boolean ours = mover < allies;
+        IntList team = new IntList(fighters.size());
+        IntList opponents = new IntList(fighters.size());
+        for (int i = 0; i < state.length; i++) {
+            if (hp(state[i]) == 0) continue;
+            if (ours == i < allies) team.add(i);
+            else opponents.add(i);
+        }
+
+        List<Warrior> teammates = new ArrayList<>(team.size());
+        Warrior self = null;
+        for (int i = 0; i < team.size(); i++) {
+            int f = team.get(i);
+            Warrior warrior = new Warrior(i, fighters.get(f).trooper, point(state[f]), stance(state[f]));
+            if (f == mover) self = warrior;
+            teammates.add(warrior);
+        }
+        List<EnemyWarrior> enemies = new ArrayList<>(opponents.size());
+        for (int i = 0; i < opponents.size(); i++) {
+            int f = opponents.get(i);
+            enemies.add(new EnemyWarrior(i, fighters.get(f).trooper, point(state[f]), stance(state[f])));
+        }
+        assert self != null : "Dead trooper's turn: " + fighters.get(mover);
+
+        Situation hypothetical = new Situation(situation, self, teammates, enemies, deadline);
+        int[] teamHp = new int[team.size()];
+        for (int i = 0; i < teamHp.length; i++) teamHp[i] = hp(state[team.get(i)]);
+        int[] opponentHp = new int[opponents.size()];
+        for (int i = 0; i < opponentHp.length; i++) opponentHp[i] = hp(state[opponents.get(i)]);
+
+        Position start = new Position(hypothetical, self.point, self.stance, actionPoints(self, teammates), bonuses(state[mover]),
+                Hitpoints.of(opponentHp), Hitpoints.of(teamHp), 0L, new PointSet());
+        return outcomes(hypothetical, start, SearchTree.arena(hypothetical), state, team.toArray(), opponents.toArray());
+    }
+
+    private int actionPoints(@NotNull Warrior self, @NotNull List<Warrior> teammates) {
+        int result = self.getInitialActionPoints();
+        if (self.type == COMMANDER) return result;
+        for (Warrior teammate : teammates) {
+            if (teammate.type == COMMANDER && teammate.point.withinEuclidean(self.point, situation.game.getCommanderAuraRange())) {
+                return result + situation.game.getCommanderAuraBonusActionPoints();
+            }
+        }
+        return result;
+    }
+
+    // Finds everything the self of the situation can do in its turn and returns a few most promising outcomes of it, or null
+    // if time is up. Team and opponents are indices of fighters by indices of allies and enemies of the situation
+    @Nullable
+    private List<Outcome> outcomes(@NotNull Situation situation, @NotNull Position start, @NotNull SearchTree tree,
+                                   @NotNull int[] state, @NotNull int[] team, @NotNull int[] opponents) {
+        tree.addRoot(start);
+        for (int node = 0; node < tree.size(); node++) {
+            if (deadline.isExpired()) return null;
+            TransitionFinder.expand(situation, tree, node);
+        }
+
+        int mover = team[situation.self.index];
+        Set<State> seen = new HashSet<>();
+        List<Outcome> result = new ArrayList<>();
+        for (int node = 0; node < tree.size(); node++) {
+            Position p = tree.position(node);
+            int[] next = state.clone();
+            for (int i = 0; i < team.length; i++) {
+                next[team[i]] = withHp(next[team[i]], p.allyHp.get(i));
+            }
+            for (int i = 0; i < opponents.length; i++) {
+                next[opponents[i]] = withHp(next[opponents[i]], p.enemyHp.get(i));
+            }
+            next[mover] = pack(p.me, p.stance, p.allyHp.get(situation.self.index), p.bonuses);
+            // Positions of the tree differ by action points too, of equal outcomes the one found first is kept
+            if (seen.add(new State(next, 0, 0))) {
+                result.add(new Outcome(next, promise(state, next, mover), node));
+            }
+        }
+
+        // Stable, so of equally promising outcomes those found earlier are preferred
+        Collections.sort(result, new Comparator<Outcome>() {
+            @Override
+            public int compare(Outcome o1, Outcome o2) {
+                return Double.compare(o2.promise, o1.promise);
+            }
+        });
+        return result.size() > coeff.endgameBranching ? result.subList(0, coeff.endgameBranching) : result;
+    }
+
+    // How good the outcome looks to the mover: damage done minus damage taken, kills count as in material(), and minus what
+    // opponents who can shoot him right away would do with one shot
+    private double promise(@NotNull int[] was, @NotNull int[] now, int mover) {
+        boolean ours = mover < allies;
+        double result = 0;
+        for (int i = 0; i < now.length; i++) {
+            int before = hp(was[i]);
+            int after = hp(now[i]);
+            double loss = before - after + (before > 0 && after == 0 ? coeff.killEnemy : 0);
+            result += ours == i < allies ? -loss : loss;
+        }
+
+        Point point = point(now[mover]);
+        TrooperStance stance = stance(now[mover]);
+        for (int i = 0; i < now.length; i++) {
+            if (hp(now[i]) == 0 || ours == i < allies) continue;
+            Warrior opponent = fighters.get(i);
+            Point from = point(now[i]);
+            TrooperStance fromStance = stance(now[i]);
+            if (situation.isReachable(opponent.getShootingRange(), from, fromStance, point, stance)) {
+                result -= opponent.getDamage(fromStance);
+            }
+        }
+        return result;
+    }
+
+    private static int pack(@NotNull Point point, @NotNull TrooperStance stance, int hp, int bonuses) {
+        return point.index() | stance.ordinal() << STANCE_SHIFT | hp << HP_SHIFT | bonuses << BONUS_SHIFT;
+    }
+
+    @NotNull
+    private static Point point(int fighter) {
+        return Point.byIndex(fighter & ((1 << STANCE_SHIFT) - 1));
+    }
+
+    @NotNull
+    private static TrooperStance stance(int fighter) {
+        return STANCES[(fighter >>> STANCE_SHIFT) & ((1 << Position.STANCE_BITS) - 1)];
+    }
+
+    private static int hp(int fighter) {
+        return (fighter >>> HP_SHIFT) & ((1 << Position.HP_BITS) - 1);
+    }
+
+    private static int bonuses(int fighter) {
+        return fighter >>> BONUS_SHIFT;
+    }
+
+    private static int withHp(int fighter, int hp) {
+        return fighter & ~(((1 << Position.HP_BITS) - 1) << HP_SHIFT) | hp << HP_SHIFT;
+    }
+}
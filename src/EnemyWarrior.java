@@ -1,10 +1,20 @@
 import model.Trooper;
+import model.TrooperStance;
 
 public class EnemyWarrior extends Warrior {
     public EnemyWarrior(int index, @NotNull Trooper trooper) {
         super(index, trooper);
     }
 
+    // One of our troopers as seen by an enemy, see Situation of the enemy's response
+    public EnemyWarrior(@NotNull Warrior ally) {
+        super(ally.index, ally.trooper, ally.point, ally.stance);
+    }
+
+    public EnemyWarrior(int index, @NotNull Trooper trooper, @NotNull Point point, @NotNull TrooperStance stance) {
+        super(index, trooper, point, stance);
+    }
+
     public boolean isHoldingFieldRation() {
         return trooper.isHoldingFieldRation();
     }
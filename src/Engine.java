@@ -0,0 +1,44 @@
+// Search engines to choose from in Const
+public enum Engine implements SearchEngine {
+    EXHAUSTIVE {
+        @NotNull
+        @Override
+        public SearchResult search(@NotNull Situation situation, @NotNull Position start) {
+            SearchTree tree = tree(situation, start);
+            return SearchResult.of(tree, ExhaustiveSearch.run(situation, tree));
+        }
+    },
+
+    BEAM {
+        @NotNull
+        @Override
+        public SearchResult search(@NotNull Situation situation, @NotNull Position start) {
+            SearchTree tree = tree(situation, start);
+            return SearchResult.of(tree, BeamSearch.run(situation, tree, situation.army.coeff.beamWidth));
+        }
+    },
+
+    BRANCH_AND_BOUND {
+        @NotNull
+        @Override
+        public SearchResult search(@NotNull Situation situation, @NotNull Position start) {
+            SearchTree tree = tree(situation, start);
+            return SearchResult.of(tree, BranchAndBound.run(situation, tree));
+        }
+    },
+
+    MONTE_CARLO {
+        @NotNull
+        @Override
+        public SearchResult search(@NotNull Situation situation, @NotNull Position start) {
+            return MonteCarlo.run(situation, start);
+        }
+    };
+
+    @NotNull
+    private static SearchTree tree(@NotNull Situation situation, @NotNull Position start) {
+        SearchTree tree = SearchTree.arena(situation);
+        tree.addRoot(start);
+        return tree;
+    }
+}
@@ -0,0 +1,73 @@
+// Evaluates every position reachable in this turn, except equal ones
+public class ExhaustiveSearch {
+    private ExhaustiveSearch() {}
+
+    public static int run(@NotNull Situation situation, @NotNull SearchTree tree) {
+        return byActionPoints(situation, tree, ParallelEvaluation.isEnabled(situation));
+    }
+
+    // Anytime: expands all positions with the most action points left first, level by level, and gives up when
+    // the deadline expires. The start position is always evaluated and expanded and its children are always evaluated, so
+    // there's something better to return than ending the turn even if the evaluation of the start took all the time.
+    // The parallel version splits each level across threads and yields exactly the same result unless the deadline expires.
+    // If the deadline is near, the evaluation gets cheaper after any node (or batch of nodes in parallel), see Effort.
+    // Only the best value so far is kept, so re-evaluating the best position is enough to keep comparing like with like
+    private static int byActionPoints(@NotNull Situation situation, @NotNull SearchTree tree, boolean parallel) {
+        ActionPointLevels levels = new ActionPointLevels();
+        levels.add(0, tree.actionPoints(0));
+        int best = -1;
+        double bestValue = -1e100;
+        int batch = parallel ? ParallelFrontier.batchSize() : 1;
+        int[] level;
+        while ((level = levels.pollHighest()) != null) {
+            for (int from = 0; from < level.length; from += batch) {
+                int to = Math.min(from + batch, level.length);
+                if (parallel) {
+                    ParallelFrontier.Expansion[] expansions = ParallelFrontier.expand(situation, tree, level, from, to);
+                    for (int i = from; i < to; i++) {
+                        ParallelFrontier.Expansion expansion = expansions[i - from];
+                        if (expansion == null) continue;
+                        if (expansion.value > bestValue) {
+                            bestValue = expansion.value;
+                            best = level[i];
+                        }
+                        for (int j = 0, n = expansion.children.size(); j < n; j++) {
+                            Position child = expansion.children.get(j);
+                            int index = tree.add(child, expansion.actions.get(j), level[i]);
+                            if (index != -1) levels.add(index, child.actionPoints);
+                        }
+                    }
+                } else {
+                    for (int i = from; i < to; i++) {
+                        int node = level[i];
+                        if (isCutOff(situation, tree, node)) continue;
+
+                        double value = situation.scorer.evaluate(tree.position(node));
+                        if (value > bestValue) {
+                            bestValue = value;
+                            best = node;
+                        }
+                        if (node != 0 && situation.deadline.isExpired()) continue;
+
+                        int size = tree.size();
+                        TransitionFinder.expand(situation, tree, node);
+                        for (int child = size, n = tree.size(); child < n; child++) {
+                            levels.add(child, tree.actionPoints(child));
+                        }
+                    }
+                }
+
+                if (situation.effort.check(to - from, level.length - to + levels.size())) {
+                    // The best so far is compared to the rest by the values of the new level
+                    bestValue = situation.scorer.evaluate(tree.position(best));
+                }
+            }
+        }
+        return best;
+    }
+
+    // Once the deadline has expired, only the children of the root are still evaluated (and not expanded)
+    public static boolean isCutOff(@NotNull Situation situation, @NotNull SearchTree tree, int node) {
+        return node != 0 && tree.parent(node) != 0 && situation.deadline.isExpired();
+    }
+}
@@ -53,6 +53,55 @@ public final class Go {
         this(action, null, null);
     }
 
+    // Packs the action into an int: action ordinal in the high half, then the direction ordinal or the point index
+    public int code() {
+        int argument = direction != null ? direction.ordinal() : point != null ? point.index() : 0;
+        return action.ordinal() << 16 | argument;
+    }
+
+    @NotNull
+    public static Go byCode(int code) {
+        ActionType action = ActionType.values()[code >>> 16];
+        int argument = code & 0xFFFF;
+        switch (action) {
+            case END_TURN: return endTurn();
+            case RAISE_STANCE: return raiseStance();
+            case LOWER_STANCE: return lowerStance();
+            case EAT_FIELD_RATION: return eatFieldRation();
+            case MOVE: return move(Direction.values()[argument]);
+            case USE_MEDIKIT: return useMedikit(Direction.values()[argument]);
+            case HEAL: return heal(Direction.values()[argument]);
+            case SHOOT: case THROW_GRENADE: return new Go(action, Point.byIndex(argument));
+            default: return new Go(action);
+        }
+    }
+
+    // Position after this action or null if it's impossible there
+    @Nullable
+    public Position applyTo(@NotNull Position p) {
+        switch (action) {
+            case END_TURN: return p;
+            case MOVE: return p.move(direction);
+            case RAISE_STANCE: return p.raiseStance();
+            case LOWER_STANCE: return p.lowerStance();
+            case EAT_FIELD_RATION: return p.eatFieldRation();
+            case THROW_GRENADE: return p.throwGrenade(point);
+            case SHOOT:
+                for (EnemyWarrior enemy : p.situation.enemies) {
+                    if (enemy.point.equals(point)) return p.shoot(enemy);
+                }
+                return null;
+            case HEAL:
+            case USE_MEDIKIT:
+                Point target = p.me.go(direction);
+                for (Warrior ally : p.allies()) {
+                    if (ally.point.equals(target)) return action == HEAL ? p.heal(ally) : p.useMedikit(ally);
+                }
+                return null;
+            default: return null;
+        }
+    }
+
     public void execute(@NotNull Move move) {
         assert direction == null || point == null : "Both direction and point are present for action: " + this;
         move.setAction(action);
@@ -131,6 +180,19 @@ public final class Go {
         }
     }
 
+    // Shots at different enemies and heals of different allies commute (each one changes hitpoints of its own target only
+    // and doesn't change anything the others depend on), so of the two orders only the one with the lesser code first
+    // is worth exploring. Stance changes don't commute with shots, since damage depends on stance
+    public boolean canFollow(int previous) {
+        int code = code();
+        return !isCommutative(code) || !isCommutative(previous) || previous <= code;
+    }
+
+    private static boolean isCommutative(int code) {
+        int action = code >>> 16;
+        return action == SHOOT.ordinal() || action == HEAL.ordinal();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Go)) return false;
@@ -0,0 +1,78 @@
+import model.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Cells worth throwing a grenade at, i.e. those of enemies and next to them, each listed once in the order of enemies and
+// directions, with enemies each of them hits. Which of them are within the throw range is computed once per our cell.
+// Nothing is computed until the first grenade is thrown, most situations never get to it
+public class Grenades {
+    private final Situation situation;
+    // Racing threads build equal tables, at worst one of them is thrown away
+    private volatile Table table;
+
+    private static class Table {
+        private final List<Point> targets = new ArrayList<>();
+        // Indexed by target: bit set of indices of enemies hit by a grenade thrown there, directly or not
+        private final IntList hits = new IntList(16);
+        // Indexed by our cell: indices of targets within the throw range from there
+        private final AtomicReferenceArray<int[]> reachable = new AtomicReferenceArray<>(Board.WIDTH * Board.HEIGHT);
+    }
+
+    public Grenades(@NotNull Situation situation) {
+        this.situation = situation;
+    }
+
+    @NotNull
+    private Table table() {
+        Table result = table;
+        if (result != null) return result;
+
+        result = new Table();
+        PointSet listed = new PointSet();
+        for (EnemyWarrior enemy : situation.enemies) {
+            for (Direction direction : Direction.values()) {
+                Point target = enemy.point.go(direction);
+                if (target == null || !listed.add(target)) continue;
+                int hit = 0;
+                for (EnemyWarrior other : situation.enemies) {
+                    if (other.point.equals(target) || other.point.isNeighbor(target)) hit |= 1 << other.index;
+                }
+                result.targets.add(target);
+                result.hits.add(hit);
+            }
+        }
+        table = result;
+        return result;
+    }
+
+    @NotNull
+    public Point target(int i) {
+        return table().targets.get(i);
+    }
+
+    // Whether a grenade thrown at the i-th target hits anyone alive
+    public boolean hitsAlive(int i, int alive) {
+        return (table().hits.get(i) & alive) != 0;
+    }
+
+    // Indices of targets a grenade can be thrown at from the cell
+    @NotNull
+    public int[] from(@NotNull Point point) {
+        Table table = table();
+        int[] result = table.reachable.get(point.index());
+        if (result == null) {
+            double range = situation.game.getGrenadeThrowRange();
+            IntList list = new IntList(table.targets.size());
+            for (int i = 0; i < table.targets.size(); i++) {
+                if (point.withinEuclidean(table.targets.get(i), range)) list.add(i);
+            }
+            result = list.toArray();
+            if (!table.reachable.compareAndSet(point.index(), null, result)) {
+                result = table.reachable.get(point.index());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+import model.Bonus;
+import model.Direction;
+import model.Game;
+import model.TrooperStance;
+
+import java.util.Arrays;
+
+import static model.BonusType.*;
+import static model.TrooperType.FIELD_MEDIC;
+import static model.TrooperType.SNIPER;
+
+// Optimistic estimate of what can still be done from a position till the end of the turn, and the total of the maximal gains
+// of scorer terms it allows. Everything here errs on the side of overestimating, so that Scorer.estimate stays admissible
+public class Headroom {
+    // Including all field rations that could possibly be eaten
+    public final int actionPoints;
+    public final int steps;
+    public final int stanceChanges;
+    public final int damage;
+    public final int healing;
+    // Bit set of BonusType.ordinal() of bonuses we don't have but could pick up
+    public final int bonusesToPick;
+
+    // Indexed by Situation.enemies
+    private final boolean[] hittable;
+    // Cells we could get to
+    private final PointSet reachable;
+
+    private double total;
+
+    public Headroom(@NotNull Situation situation, @NotNull Position p) {
+        Game game = situation.game;
+        Warrior self = situation.self;
+
+        // Eaten rations give more steps, so all of them are counted, other bonuses only if they're reachable
+        int rations = 0;
+        int grenades = 0;
+        int medikits = 0;
+        for (int i = 0, n = situation.bonuses.size(); i < n; i++) {
+            if (p.isCollected(i)) continue;
+            Bonus bonus = situation.bonuses.get(i);
+            if (bonus.getType() == FIELD_RATION) rations++;
+        }
+        int minMoveCost = Math.min(game.getStandingMoveCost(), Math.min(game.getKneelingMoveCost(), game.getProneMoveCost()));
+        int rationBonus = Math.max(game.getFieldRationBonusActionPoints() - game.getFieldRationEatCost(), 0);
+
+        int ap = p.actionPoints + (p.has(FIELD_RATION) ? rationBonus : 0);
+        boolean canWalk = ap + rations * rationBonus >= minMoveCost;
+        if (!canWalk) {
+            rations = grenades = medikits = 0;
+        }
+        this.actionPoints = ap + rations * rationBonus;
+        this.steps = actionPoints / minMoveCost;
+        // Enemies may be killed on the way, so only allies block it
+        this.reachable = canWalk ? single(p.me).flood(situation.free, steps) : single(p.me);
+        this.stanceChanges = actionPoints / game.getStanceChangeCost();
+        for (int i = 0, n = situation.bonuses.size(); i < n; i++) {
+            Bonus bonus = situation.bonuses.get(i);
+            if (p.isCollected(i) || !reachable.contains(Point.create(bonus))) continue;
+            if (bonus.getType() == GRENADE) grenades++;
+            else if (bonus.getType() == MEDIKIT) medikits++;
+        }
+
+        int maxShotDamage = 0;
+        for (TrooperStance stance : TrooperStance.values()) {
+            maxShotDamage = Math.max(maxShotDamage, self.getDamage(stance));
+        }
+        int throwable = Math.min((p.has(GRENADE) ? 1 : 0) + grenades, actionPoints / game.getGrenadeThrowCost());
+        int shootingDamage = (actionPoints / self.getShootCost()) * maxShotDamage;
+        int grenadeDamage = throwable * (game.getGrenadeDirectDamage() + 4 * game.getGrenadeCollateralDamage());
+
+        // Euclidean distance to an enemy can't decrease by more than the number of steps
+        double shootingRange = self.getShootingRange() + maxSniperShootingRangeBonus(situation) + steps;
+        double grenadeRange = throwable > 0 ? game.getGrenadeThrowRange() + 1 + steps : 0;
+        int hittable = 0;
+        int hittableByShots = 0;
+        this.hittable = new boolean[p.enemyHp.size()];
+        for (EnemyWarrior enemy : situation.enemies) {
+            int hp = p.enemyHp.get(enemy.index);
+            if (hp == 0) continue;
+            if (p.me.withinEuclidean(enemy.point, shootingRange)) {
+                hittableByShots += hp;
+            } else if (!p.me.withinEuclidean(enemy.point, grenadeRange)) {
+                continue;
+            }
+            hittable += hp;
+            this.hittable[enemy.index] = true;
+        }
+        this.damage = Math.min(Math.min(shootingDamage, hittableByShots) + grenadeDamage, hittable);
+
+        int usable = Math.min((p.has(MEDIKIT) ? 1 : 0) + medikits, actionPoints / game.getMedikitUseCost());
+        int heal = usable * Math.max(game.getMedikitBonusHitpoints(), game.getMedikitHealSelfBonusHitpoints());
+        if (self.type == FIELD_MEDIC) {
+            heal += (actionPoints / game.getFieldMedicHealCost()) *
+                    Math.max(game.getFieldMedicHealBonusHitpoints(), game.getFieldMedicHealSelfBonusHitpoints());
+        }
+        this.healing = heal;
+
+        int pick = 0;
+        if (rations > 0 && !p.has(FIELD_RATION)) pick |= 1 << FIELD_RATION.ordinal();
+        if (grenades > 0 && !p.has(GRENADE)) pick |= 1 << GRENADE.ordinal();
+        if (medikits > 0 && !p.has(MEDIKIT)) pick |= 1 << MEDIKIT.ordinal();
+        this.bonusesToPick = pick;
+    }
+
+    private static double maxSniperShootingRangeBonus(@NotNull Situation situation) {
+        if (situation.self.type != SNIPER) return 0;
+        Game game = situation.game;
+        double max = Math.max(game.getSniperStandingShootingRangeBonus(),
+                Math.max(game.getSniperKneelingShootingRangeBonus(), game.getSniperProneShootingRangeBonus()));
+        switch (situation.self.stance) {
+            case STANDING: return max - game.getSniperStandingShootingRangeBonus();
+            case KNEELING: return max - game.getSniperKneelingShootingRangeBonus();
+            case PRONE: return max - game.getSniperProneShootingRangeBonus();
+            default: throw new IllegalStateException("Unknown stance: " + situation.self.stance);
+        }
+    }
+
+    @NotNull
+    private static PointSet single(@NotNull Point point) {
+        PointSet result = new PointSet();
+        result.add(point);
+        return result;
+    }
+
+    // Whether we could get to the point or next to it, i.e. heal someone there
+    public boolean canTouch(@NotNull Point point) {
+        if (reachable.contains(point)) return true;
+        for (Direction direction : Util.DIRECTIONS) {
+            Point neighbor = point.go(direction);
+            if (neighbor != null && reachable.contains(neighbor)) return true;
+        }
+        return false;
+    }
+
+    public boolean canRelocate() {
+        return steps > 0 || stanceChanges > 0;
+    }
+
+    // Maximal number of enemies which could be killed with all the damage we're still able to deal to those within reach
+    public int kills(@NotNull Hitpoints enemyHp) {
+        int[] alive = new int[enemyHp.size()];
+        int n = 0;
+        for (int i = 0; i < alive.length; i++) {
+            if (hittable[i]) alive[n++] = enemyHp.get(i);
+        }
+        Arrays.sort(alive, 0, n);
+        int result = 0;
+        int left = damage;
+        while (result < n && alive[result] <= left) {
+            left -= alive[result++];
+        }
+        return result;
+    }
+
+    public void add(double gain) {
+        assert gain >= 0 : "Negative gain: " + gain;
+        total += gain;
+    }
+
+    public double total() {
+        return total;
+    }
+}
@@ -0,0 +1,162 @@
+import model.Trooper;
+
+import java.util.List;
+
+// Hitpoints of a list of troopers packed in Position.HP_BITS-wide lanes, LANES of them in a long. Immutable, so positions share it
+// until a transition changes someone's hitpoints
+public final class Hitpoints {
+    private static final int BITS = Position.HP_BITS;
+    private static final int LANES = 64 / BITS;
+    public static final int MAX_SIZE = 2 * LANES;
+    private static final long LANE = (1L << BITS) - 1;
+    // The lowest bit of every lane
+    private static final long ONES;
+    // The highest bit of every lane and the rest of the lane
+    private static final long HIGH;
+    private static final long LOW;
+
+    static {
+        long ones = 0;
+        for (int i = 0; i < LANES; i++) {
+            ones |= 1L << (i * BITS);
+        }
+        ONES = ones;
+        HIGH = ones << (BITS - 1);
+        LOW = HIGH - ones;
+    }
+
+    private final int size;
+    // Lanes [0, LANES) and [LANES, 2 * LANES)
+    private final long low;
+    private final long high;
+
+    private Hitpoints(int size, long low, long high) {
+        this.size = size;
+        this.low = low;
+        this.high = high;
+    }
+
+    @NotNull
+    public static Hitpoints of(@NotNull int... hitpoints) {
+        assert hitpoints.length <= MAX_SIZE : "Too many troopers: " + hitpoints.length;
+        long low = 0;
+        long high = 0;
+        for (int i = 0; i < hitpoints.length; i++) {
+            int hp = hitpoints[i];
+            assert hp >= 0 && hp <= LANE : "Hitpoints don't fit in " + BITS + " bits: " + hp;
+            if (i < LANES) low |= (long) hp << (i * BITS);
+            else high |= (long) hp << ((i - LANES) * BITS);
+        }
+        return new Hitpoints(hitpoints.length, low, high);
+    }
+
+    // Of the words as word() returns them
+    @NotNull
+    public static Hitpoints ofWords(int size, long low, long high) {
+        assert size <= MAX_SIZE : "Too many troopers: " + size;
+        return new Hitpoints(size, low, high);
+    }
+
+    @NotNull
+    public static Hitpoints of(@NotNull List<Trooper> troopers) {
+        int[] hitpoints = new int[troopers.size()];
+        for (int i = 0; i < hitpoints.length; i++) {
+            hitpoints[i] = troopers.get(i).getHitpoints();
+        }
+        return of(hitpoints);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Longs needed to hold the lanes of that many troopers
+    public static int words(int size) {
+        return size <= LANES ? 1 : 2;
+    }
+
+    // Lanes [0, LANES) if index is 0, the rest if it's 1
+    public long word(int index) {
+        return index == 0 ? low : high;
+    }
+
+    public int get(int index) {
+        return (int) ((index < LANES ? low >>> (index * BITS) : high >>> ((index - LANES) * BITS)) & LANE);
+    }
+
+    @NotNull
+    public Hitpoints with(int index, int hp) {
+        assert hp >= 0 && hp <= LANE : "Hitpoints don't fit in " + BITS + " bits: " + hp;
+        if (get(index) == hp) return this;
+        if (index < LANES) {
+            int shift = index * BITS;
+            return new Hitpoints(size, low & ~(LANE << shift) | (long) hp << shift, high);
+        } else {
+            int shift = (index - LANES) * BITS;
+            return new Hitpoints(size, low, high & ~(LANE << shift) | (long) hp << shift);
+        }
+    }
+
+    // Sum of lanes is the sum over bit planes of their population times the weight of the plane
+    public int sum() {
+        int result = 0;
+        for (int bit = 0; bit < BITS; bit++) {
+            long plane = ONES << bit;
+            result += (Long.bitCount(low & plane) + Long.bitCount(high & plane)) << bit;
+        }
+        return result;
+    }
+
+    public int numberOfZeros() {
+        return size - Long.bitCount(nonZero(low)) - Long.bitCount(nonZero(high));
+    }
+
+    // Bit set of indices of troopers who are alive
+    public int alive() {
+        int result = 0;
+        for (long bits = nonZero(low); bits != 0; bits &= bits - 1) {
+            result |= 1 << (Long.numberOfTrailingZeros(bits) / BITS);
+        }
+        for (long bits = nonZero(high); bits != 0; bits &= bits - 1) {
+            result |= 1 << (LANES + Long.numberOfTrailingZeros(bits) / BITS);
+        }
+        return result;
+    }
+
+    // The highest bit of each lane which isn't zero. Adding LOW to the lower bits of a lane doesn't carry out of it
+    private static long nonZero(long lanes) {
+        return ((lanes & LOW) + LOW | lanes) & HIGH;
+    }
+
+    @NotNull
+    public int[] toArray() {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Hitpoints)) return false;
+        Hitpoints that = (Hitpoints) o;
+        return size == that.size && low == that.low && high == that.high;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (low ^ (low >>> 32)) + (int) (high ^ (high >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(get(i));
+        }
+        return sb.append("]").toString();
+    }
+}
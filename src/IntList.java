@@ -0,0 +1,44 @@
+import java.util.Arrays;
+
+public class IntList {
+    private int[] data;
+    private int size;
+
+    public IntList(int capacity) {
+        this.data = new int[Math.max(capacity, 4)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int get(int index) {
+        assert index < size : "Index out of bounds: " + index + " >= " + size;
+        return data[index];
+    }
+
+    public void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, 2 * size);
+        }
+        data[size++] = value;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    @NotNull
+    public int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -1,28 +1,38 @@
 import model.Game;
 import model.Trooper;
 import model.TrooperStance;
+import model.TrooperType;
 import model.World;
 
 import java.util.*;
 
 import static model.BonusType.*;
-import static model.TrooperStance.STANDING;
 
 public class MakeTurn {
     private final Army army;
     private final Trooper self;
     private final World world;
     private final Game game;
+    private final Deadline deadline;
+    private final boolean speculative;
 
     private final Point me;
     private final List<Trooper> enemies;
     private final List<Trooper> allies;
+    private final TurnLocalData data;
 
-    public MakeTurn(@NotNull Army army, @NotNull Trooper self, @NotNull World world, @NotNull Game game) {
+    public MakeTurn(@NotNull Army army, @NotNull Trooper self, @NotNull World world, @NotNull Game game, @NotNull Deadline deadline) {
+        this(army, self, world, game, deadline, turnLocalData(army, self, world), false);
+    }
+
+    private MakeTurn(@NotNull Army army, @NotNull Trooper self, @NotNull World world, @NotNull Game game, @NotNull Deadline deadline,
+                     @NotNull TurnLocalData data, boolean speculative) {
         this.army = army;
         this.self = self;
         this.world = world;
         this.game = game;
+        this.deadline = deadline;
+        this.speculative = speculative;
 
         me = Point.create(self);
         List<Trooper> enemies = null;
@@ -36,17 +46,82 @@ public class MakeTurn {
             }
         }
 
+        this.enemies = data.updateEnemies(enemies == null ? Collections.<Trooper>emptyList() : enemies);
+        this.data = data;
+    }
+
+    @NotNull
+    private static TurnLocalData turnLocalData(@NotNull Army army, @NotNull Trooper self, @NotNull World world) {
         TurnLocalData data = army.loadTurnLocalData(world.getMoveIndex(), self.getType());
         if (data == null) {
             data = new TurnLocalData();
             army.saveTurnLocalData(world.getMoveIndex(), self.getType(), data);
         }
-        this.enemies = data.updateEnemies(enemies == null ? Collections.<Trooper>emptyList() : enemies);
+        return data;
+    }
+
+    // Plan of the turn in the world expected by a speculation, so nothing is remembered for this turn, see Speculation
+    @NotNull
+    public static Plan speculate(@NotNull Army army, @NotNull Trooper self, @NotNull World world, @NotNull Game game,
+                                 @NotNull Deadline deadline) {
+        return new MakeTurn(army, self, world, game, deadline, new TurnLocalData(), true).search();
     }
 
     @NotNull
     public Go makeTurn() {
-        Situation situation = new Situation(game, world, army, self.getType(), allies, enemies, Arrays.asList(world.getBonuses()));
+        Plan plan = data.getPlan();
+        if (plan != null && army.coeff.reusePlans && plan.isOnTrack(self, world, allies, enemies)) {
+            return plan.advance();
+        }
+
+        // A speculation is made for the first move() of a trooper's turn. Once taken it's cancelled whether it's used or not,
+        // so that it doesn't compete with the search for the rest of the turn
+        Speculation speculation = army.takeSpeculation();
+        Plan speculative = null;
+        if (speculation != null) {
+            speculative = plan == null ? speculation.take(self, world) : null;
+            speculation.cancel();
+        }
+        if (speculative != null) {
+            // The speculation has only looked at the way point (see Scorer.Leader.wayPoint), the real situation moves the army on
+            situation();
+        }
+        plan = speculative != null ? speculative : search();
+        data.setPlan(plan);
+
+        if (army.coeff.speculativePlans && army.isOrderComplete()) {
+            TrooperType next = nextTrooper(plan.end());
+            if (next != null) {
+                army.setSpeculation(Speculation.start(army, world, game, self, plan.end(), allies, enemies, next,
+                        MyStrategy.TIME_BUDGET_PER_MOVE_MILLIS));
+            }
+        }
+
+        return plan.advance();
+    }
+
+    @Nullable
+    private TrooperType nextTrooper(@NotNull Position end) {
+        List<TrooperType> order = army.getOrder();
+        int myIndex = order.indexOf(self.getType());
+        for (int i = 1; i <= order.size(); i++) {
+            TrooperType type = order.get((myIndex + i) % order.size());
+            for (int j = 0; j < allies.size(); j++) {
+                if (allies.get(j).getType() == type && end.allyHp.get(j) > 0) return type;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    private Situation situation() {
+        return new Situation(game, world, army, self.getType(), allies, enemies, Arrays.asList(world.getBonuses()), deadline,
+                speculative);
+    }
+
+    @NotNull
+    private Plan search() {
+        Situation situation = situation();
 
         Position start = new Position(
                 situation,
@@ -54,72 +129,40 @@ public class MakeTurn {
                 self.getStance(),
                 self.getActionPoints(),
                 computeBonusesBitSet(self),
-                IntArrays.hitpointsOf(enemies),
-                IntArrays.hitpointsOf(allies),
-                IntArrays.EMPTY,
+                Hitpoints.of(enemies),
+                Hitpoints.of(allies),
+                0L,
                 computeSeenForSituation(situation)
         );
 
-        List<Go> best = best(situation, start).second;
+        Pair<Position, List<Go>> result = Endgame.solve(situation, start);
+        if (result == null) {
+            result = best(situation, start);
+        }
+        List<Go> best = result.second;
         debug(situation.scorer, best);
-        return best.isEmpty() ? Go.endTurn() : best.iterator().next();
+        return new Plan(start, best, !situation.deadline.isExpired());
     }
 
     @NotNull
     public static Pair<Position, List<Go>> best(@NotNull Situation situation, @NotNull Position start) {
-        // TODO: ArrayDeque?
-        final Queue<Position> queue = new LinkedList<>();
-        queue.add(start);
-        final Map<Position, Pair<Go, Position>> prev = new HashMap<>();
-        prev.put(start, null);
-
-        Position best = null;
-        double bestValue = -1e100;
-        while (!queue.isEmpty()) {
-            Position cur = queue.poll();
-
-            double curValue = situation.scorer.evaluate(cur);
-            if (curValue > bestValue) {
-                bestValue = curValue;
-                best = cur;
-            }
-
-            new TransitionFinder(situation, cur, queue, prev).run();
-        }
-
-        assert best != null : "Where's best? " + start;
-
-        return collectResult(start, prev, best);
-    }
-
-    @NotNull
-    private static Pair<Position, List<Go>> collectResult(@NotNull Position start, @NotNull Map<Position, Pair<Go, Position>> prev,
-                                                          @NotNull Position best) {
-        if (best == start) return new Pair<>(best, Collections.<Go>emptyList());
-
-        Position cur = best;
-        List<Go> result = new ArrayList<>(12);
-        while (true) {
-            Pair<Go, Position> before = prev.get(cur);
-            assert before != null : "Nothing before " + cur;
-            result.add(before.first);
-            if (before.second == start) return new Pair<>(best, Util.reverse(result));
-            cur = before.second;
+        Const coeff = situation.army.coeff;
+        SearchResult result;
+        if (situation.lightVersion) {
+            result = coeff.nestedSearchEngine.search(situation, start);
+        } else if (coeff.comparedSearchEngine != null) {
+            result = SearchComparison.run(situation, start, coeff.searchEngine, coeff.comparedSearchEngine);
+        } else {
+            result = coeff.searchEngine.search(situation, start);
         }
+        return new Pair<>(result.position, result.path);
     }
 
     @NotNull
     public static PointSet computeSeenForSituation(@NotNull Situation situation) {
         PointSet result = new PointSet();
         for (Warrior ally : situation.allies) {
-            Point point = ally.point;
-            TrooperStance stance = ally.stance;
-            double visionRange = ally.getVisionRange();
-            for (Point object : situation.board.allPassable()) {
-                if (situation.isReachable(visionRange, point, stance, object, STANDING)) {
-                    result.add(object);
-                }
-            }
+            result.addAll(situation.board.visibleFrom(ally.type, ally.getVisionRange(), ally.point, ally.stance));
         }
         return result;
     }
@@ -127,22 +170,15 @@ public class MakeTurn {
     @NotNull
     public static PointSet computeSeenForPosition(@NotNull Situation situation, @NotNull Point viewer, @NotNull TrooperStance viewerStance,
                                                   @NotNull PointSet given) {
-        if (situation.lightVersion) return given;
-
-        double visionRange = situation.self.getVisionRange();
-        PointSet result = null;
-        for (Point object : situation.board.allPassable()) {
-            if (situation.isReachable(visionRange, viewer, viewerStance, object, STANDING)) {
-                if (!given.contains(object)) {
-                    if (result == null) {
-                        result = given.copy();
-                    }
-                    result.add(object);
-                }
-            }
-        }
+        if (situation.effort.drops(Effort.Level.LIGHT)) return given;
 
-        return result != null ? result : given;
+        Warrior self = situation.self;
+        PointSet visible = situation.board.visibleFrom(self.type, self.getVisionRange(), viewer, viewerStance);
+        if (given.containsAll(visible)) return given;
+
+        PointSet result = given.copy();
+        result.addAll(visible);
+        return result;
     }
 
     public static int computeBonusesBitSet(@NotNull Trooper self) {
@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+// Monte Carlo tree search with Scorer.evaluate as the value of a leaf. Each iteration descends from the root by UCB to a position
+// which still has unevaluated children, evaluates one of them and propagates its value up as the maximum, since the turn may
+// end at any position on the way. If the search may run in parallel (see ParallelEvaluation.isEnabled), workers search
+// independently from the root on the pool, trying children in different random orders, and the best position found by any
+// of them wins. Otherwise a single worker searches in this thread
+public class MonteCarlo implements Callable<MonteCarlo.Result> {
+    public static class Result {
+        public final double value;
+        public final SearchResult result;
+
+        private Result(double value, @NotNull SearchResult result) {
+            this.value = value;
+            this.result = result;
+        }
+    }
+
+    private final Situation situation;
+    private final Position start;
+    private final int iterations;
+    private final double exploration;
+    private final Random random;
+
+    private SearchTree tree;
+    // Indexed by node: number of visits and the best value in the subtree
+    private int[] visits = new int[256];
+    private double[] best = new double[256];
+    // Children of a node are nodes [childrenFrom, childrenTo) of the tree, of them first evaluated are evaluated already
+    // and are the ones in the beginning of the permutation
+    private int[] childrenFrom = new int[256];
+    private int[] childrenTo = new int[256];
+    private int[] evaluated = new int[256];
+    private int[] permutation = new int[256];
+
+    private double minValue = Double.POSITIVE_INFINITY;
+    private double maxValue = Double.NEGATIVE_INFINITY;
+
+    private MonteCarlo(@NotNull Situation situation, @NotNull Position start, int iterations, double exploration, long seed) {
+        this.situation = situation;
+        this.start = start;
+        this.iterations = iterations;
+        this.exploration = exploration;
+        this.random = new Random(seed);
+    }
+
+    @NotNull
+    public static SearchResult run(@NotNull Situation situation, @NotNull Position start) {
+        Const coeff = situation.army.coeff;
+        boolean parallel = ParallelEvaluation.isEnabled(situation);
+        int n = parallel ? coeff.monteCarloWorkers : 1;
+        List<MonteCarlo> workers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            workers.add(new MonteCarlo(situation, start, coeff.monteCarloIterations, coeff.monteCarloExploration, i));
+        }
+
+        List<Result> results = new ArrayList<>(workers.size());
+        if (!parallel) {
+            results.add(workers.get(0).call());
+        } else {
+            try {
+                for (Future<Result> future : ParallelFrontier.POOL.invokeAll(workers)) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        // Of equal results the one of the first worker is taken, so the outcome doesn't depend on scheduling
+        Result best = null;
+        int nodes = 0;
+        for (Result result : results) {
+            if (best == null || result.value > best.value) best = result;
+            nodes += result.result.nodes;
+        }
+        return new SearchResult(best.result.position, best.result.path, nodes);
+    }
+
+    @Override
+    public Result call() {
+        // Trees are kept per thread, so this one is valid until the next search of this thread
+        tree = SearchTree.arena(situation);
+        tree.addRoot(start);
+        childrenFrom[0] = -1;
+
+        int bestNode = 0;
+        double bestValue = situation.scorer.evaluate(start);
+        backUp(0, bestValue);
+
+        IntList path = new IntList(16);
+        for (int i = 0; i < iterations && !situation.deadline.isExpired(); i++) {
+            path.clear();
+            int node = 0;
+            int child;
+            while (true) {
+                path.add(node);
+                if (childrenFrom[node] == -1) expand(node);
+                child = nextUnevaluated(node);
+                if (child != -1 || childrenFrom[node] == childrenTo[node]) break;
+                node = select(node);
+            }
+
+            double value;
+            if (child != -1) {
+                value = situation.scorer.evaluate(tree.position(child));
+                path.add(child);
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestNode = child;
+                }
+            } else {
+                // Nothing can be done in this position anymore, so its value is final
+                value = best[node];
+            }
+            for (int j = 0; j < path.size(); j++) {
+                backUp(path.get(j), value);
+            }
+        }
+
+        return new Result(bestValue, SearchResult.of(tree, bestNode));
+    }
+
+    private void expand(int node) {
+        int from = tree.size();
+        TransitionFinder.expand(situation, tree, node);
+        int to = tree.size();
+        ensureCapacity(to);
+        for (int child = from; child < to; child++) {
+            childrenFrom[child] = -1;
+            permutation[child] = child;
+        }
+        childrenFrom[node] = from;
+        childrenTo[node] = to;
+    }
+
+    private int nextUnevaluated(int node) {
+        int from = childrenFrom[node];
+        int next = from + evaluated[node];
+        int to = childrenTo[node];
+        if (next == to) return -1;
+
+        int chosen = next + random.nextInt(to - next);
+        int child = permutation[chosen];
+        permutation[chosen] = permutation[next];
+        permutation[next] = child;
+        evaluated[node]++;
+        return child;
+    }
+
+    private int select(int node) {
+        double range = maxValue > minValue ? maxValue - minValue : 1;
+        double logVisits = Math.log(visits[node]);
+        int result = -1;
+        double resultScore = Double.NEGATIVE_INFINITY;
+        for (int i = childrenFrom[node], to = childrenTo[node]; i < to; i++) {
+            int child = permutation[i];
+            double score = (best[child] - minValue) / range + exploration * Math.sqrt(logVisits / visits[child]);
+            if (score > resultScore) {
+                resultScore = score;
+                result = child;
+            }
+        }
+        return result;
+    }
+
+    private void backUp(int node, double value) {
+        if (visits[node] == 0 || value > best[node]) best[node] = value;
+        visits[node]++;
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= visits.length) return;
+        int capacity = Math.max(size, 2 * visits.length);
+        visits = Arrays.copyOf(visits, capacity);
+        best = Arrays.copyOf(best, capacity);
+        childrenFrom = Arrays.copyOf(childrenFrom, capacity);
+        childrenTo = Arrays.copyOf(childrenTo, capacity);
+        evaluated = Arrays.copyOf(evaluated, capacity);
+        permutation = Arrays.copyOf(permutation, capacity);
+    }
+}
@@ -7,13 +7,12 @@ import java.util.Map;
 public class MyStrategy implements Strategy {
     private static final Map<Long, Army> ARMIES = new HashMap<>(6);
 
+    // The search returns the best it has found by then, so that no single move() call eats up the time of the whole game
+    public static final long TIME_BUDGET_PER_MOVE_MILLIS = 150;
+
     @Override
     public void move(@NotNull Trooper self, @NotNull World world, @NotNull Game game, @NotNull Move move) {
-        if (Board.WIDTH == -1) {
-            // Not very great, but hey, they could've exposed these as public static final constants
-            Board.WIDTH = world.getWidth();
-            Board.HEIGHT = world.getHeight();
-        }
+        Deadline deadline = Deadline.after(TIME_BUDGET_PER_MOVE_MILLIS);
 
         long id = self.getPlayerId();
         Army army = ARMIES.get(id);
@@ -21,6 +20,7 @@ public class MyStrategy implements Strategy {
             army = new Army(world);
             ARMIES.put(id, army);
         }
+        army.getWarmUp().stop();
 
         List<TrooperType> order = army.getOrder();
         TrooperType myType = self.getType();
@@ -30,8 +30,12 @@ public class MyStrategy implements Strategy {
             army.completeOrder();
         }
 
-        Go go = new MakeTurn(army, self, world, game).makeTurn();
+        Go go = new MakeTurn(army, self, world, game, deadline).makeTurn();
         // go.validate(self, world, game);
         go.execute(move);
+
+        if (army.coeff.warmUp) {
+            army.getWarmUp().start(world, game);
+        }
     }
 }
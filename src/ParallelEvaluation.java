@@ -0,0 +1,77 @@
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates or estimates a batch of positions of the tree on the shared pool, for searches which decide what to do next only
+// after the whole batch is scored. Values are stored by index, so the caller goes through them in the same order as it would
+// without threads, and the result of the search is the same
+@SuppressWarnings("serial")
+public class ParallelEvaluation extends RecursiveAction {
+    private final Situation situation;
+    private final SearchTree tree;
+    private final int[] nodes;
+    private final double[] values;
+    private final Scorer.Estimate[] estimates;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    private ParallelEvaluation(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes, @Nullable double[] values,
+                               @Nullable Scorer.Estimate[] estimates, int from, int to, int grain) {
+        this.situation = situation;
+        this.tree = tree;
+        this.nodes = nodes;
+        this.values = values;
+        this.estimates = estimates;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+    }
+
+    public static boolean isEnabled(@NotNull Situation situation) {
+        // Nested searches are already run in parallel as a part of the evaluation of the outer one, and a speculation should
+        // leave the pool to the real search
+        return situation.army.coeff.parallelSearch && !situation.lightVersion && !situation.speculative;
+    }
+
+    // Element is NaN if the node wasn't evaluated because the deadline has expired, see ExhaustiveSearch.isCutOff
+    @NotNull
+    public static double[] evaluate(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes) {
+        double[] result = new double[nodes.length];
+        invoke(situation, tree, nodes, result, null);
+        return result;
+    }
+
+    // Estimates every node regardless of the deadline
+    @NotNull
+    public static Scorer.Estimate[] estimate(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes) {
+        Scorer.Estimate[] result = new Scorer.Estimate[nodes.length];
+        invoke(situation, tree, nodes, null, result);
+        return result;
+    }
+
+    private static void invoke(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes, @Nullable double[] values,
+                               @Nullable Scorer.Estimate[] estimates) {
+        int grain = Math.max(1, nodes.length / (4 * ParallelFrontier.POOL.getParallelism()));
+        ParallelFrontier.POOL.invoke(new ParallelEvaluation(situation, tree, nodes, values, estimates, 0, nodes.length, grain));
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > grain) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParallelEvaluation(situation, tree, nodes, values, estimates, from, mid, grain),
+                      new ParallelEvaluation(situation, tree, nodes, values, estimates, mid, to, grain));
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            Position position = tree.position(nodes[i]);
+            if (estimates != null) {
+                estimates[i] = situation.scorer.estimate(position);
+            } else if (ExhaustiveSearch.isCutOff(situation, tree, nodes[i])) {
+                values[i] = Double.NaN;
+            } else {
+                values[i] = situation.scorer.evaluate(position);
+            }
+        }
+    }
+}
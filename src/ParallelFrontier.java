@@ -0,0 +1,91 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Evaluates and expands one level of the search on the shared pool. The tree is only read here: new positions are collected
+// per node and then added by the caller in exactly the same order the sequential search would've added them
+@SuppressWarnings("serial")
+public class ParallelFrontier extends RecursiveAction {
+    private static final int MAX_THREADS = 4;
+    // One core is left to the game and the speculation, see Const.parallelSearch
+    public static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1)));
+
+    public static class Expansion {
+        public final double value;
+        public final List<Position> children = new ArrayList<>();
+        public final IntList actions = new IntList(8);
+
+        private Expansion(double value) {
+            this.value = value;
+        }
+    }
+
+    private final Situation situation;
+    private final SearchTree tree;
+    private final int[] nodes;
+    // Element i - offset is for the node i
+    private final Expansion[] result;
+    private final int offset;
+    private final int from;
+    private final int to;
+    private final int grain;
+
+    private ParallelFrontier(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes, @NotNull Expansion[] result,
+                             int from, int to, int grain, int offset) {
+        this.situation = situation;
+        this.tree = tree;
+        this.nodes = nodes;
+        this.result = result;
+        this.offset = offset;
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+    }
+
+    // Number of nodes worth expanding at once: enough for every thread to have a few, few enough for the search to be able
+    // to lower the effort soon after it sees it's late, see Effort
+    public static int batchSize() {
+        return 4 * POOL.getParallelism();
+    }
+
+    // Expands nodes [from, to), element i - from of the result is for the node i. It's null if the node wasn't evaluated because
+    // the deadline has expired, see ExhaustiveSearch.isCutOff
+    @NotNull
+    public static Expansion[] expand(@NotNull Situation situation, @NotNull SearchTree tree, @NotNull int[] nodes, int from, int to) {
+        Expansion[] result = new Expansion[to - from];
+        int grain = Math.max(1, (to - from) / (4 * POOL.getParallelism()));
+        POOL.invoke(new ParallelFrontier(situation, tree, nodes, result, from, to, grain, from));
+        return result;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from > grain) {
+            int mid = (from + to) >>> 1;
+            invokeAll(new ParallelFrontier(situation, tree, nodes, result, from, mid, grain, offset),
+                      new ParallelFrontier(situation, tree, nodes, result, mid, to, grain, offset));
+            return;
+        }
+
+        final long[] buffer = new long[tree.keyLength()];
+        for (int i = from; i < to; i++) {
+            if (ExhaustiveSearch.isCutOff(situation, tree, nodes[i])) continue;
+
+            Position cur = tree.position(nodes[i]);
+            final Expansion expansion = new Expansion(situation.scorer.evaluate(cur));
+            result[i - offset] = expansion;
+            if (nodes[i] != 0 && situation.deadline.isExpired()) continue;
+            new TransitionFinder(situation, cur, tree.action(nodes[i])) {
+                @Override
+                protected void add(@NotNull Position next, int action) {
+                    if (!tree.contains(next, buffer)) {
+                        expansion.children.add(next);
+                        expansion.actions.add(action);
+                    }
+                }
+            }.run();
+        }
+    }
+}
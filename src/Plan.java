@@ -0,0 +1,74 @@
+import model.Bonus;
+import model.Trooper;
+import model.World;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Best path found by the search in the beginning of the turn and the positions it's expected to lead to. Since only the first
+// action is made per move() call, the next call can continue the plan if the world turned out to be as expected
+public class Plan {
+    private final Position start;
+    private final List<Go> steps;
+    private final List<Position> expected;
+    // Whether the search had the time to look at everything. A plan of a search cut short by the deadline is only the best of what
+    // it got to, so the next move() call searches again
+    private final boolean finished;
+    private int next;
+
+    public Plan(@NotNull Position start, @NotNull List<Go> steps, boolean finished) {
+        this.start = start;
+        this.steps = steps;
+        this.finished = finished;
+        this.expected = new ArrayList<>(steps.size());
+        Position p = start;
+        for (Go step : steps) {
+            p = step.applyTo(p);
+            assert p != null : "Plan " + steps + " is impossible from " + start;
+            expected.add(p);
+        }
+    }
+
+    // Position where the plan ends
+    @NotNull
+    public Position end() {
+        return expected.isEmpty() ? start : expected.get(expected.size() - 1);
+    }
+
+    @NotNull
+    public Go advance() {
+        return next < steps.size() ? steps.get(next++) : Go.endTurn();
+    }
+
+    // Whether the trooper is where the plan expected it to be after the last action made, and the plan is worth continuing
+    public boolean isOnTrack(@NotNull Trooper self, @NotNull World world, @NotNull List<Trooper> allies,
+                             @NotNull List<Trooper> enemies) {
+        if (!finished || next == 0 || next > expected.size()) return false;
+        Position p = expected.get(next - 1);
+        return p.me.isEqualTo(self) &&
+                p.stance == self.getStance() &&
+                p.actionPoints == self.getActionPoints() &&
+                p.bonuses == MakeTurn.computeBonusesBitSet(self) &&
+                p.allyHp.equals(Hitpoints.of(allies)) &&
+                p.enemyHp.equals(Hitpoints.of(enemies)) &&
+                sameBonuses(p, world.getBonuses());
+    }
+
+    // Bonuses which came into view since the search weren't considered by it, so the plan may miss a better pickup
+    private static boolean sameBonuses(@NotNull Position p, @NotNull Bonus[] bonuses) {
+        List<Bonus> known = p.situation.bonuses;
+        int left = 0;
+        for (int i = 0, n = known.size(); i < n; i++) {
+            if (!p.isCollected(i)) left++;
+        }
+        if (bonuses.length != left) return false;
+        outer: for (Bonus bonus : bonuses) {
+            for (int i = 0, n = known.size(); i < n; i++) {
+                if (!p.isCollected(i) && known.get(i).getId() == bonus.getId()) continue outer;
+            }
+            return false;
+        }
+        return true;
+    }
+}
@@ -39,6 +39,11 @@ public final class Point {
         return x * Board.HEIGHT + y;
     }
 
+    @NotNull
+    public static Point byIndex(int index) {
+        return new Point(index / Board.HEIGHT, index % Board.HEIGHT);
+    }
+
     @NotNull
     public Direction direction(@NotNull Point neighbor) {
         int dx = neighbor.x - x;
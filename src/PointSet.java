@@ -4,6 +4,20 @@ import java.util.Iterator;
 import java.util.Set;
 
 public class PointSet implements Set<Point> {
+    // Longs needed for a bit per cell, ceil(30 * 20 / 64) = 10
+    private static final int LENGTH = (Board.WIDTH * Board.HEIGHT + 63) >> 6;
+    // Bits of cells which have a neighbor in the next or the previous row, i.e. y + 1 < HEIGHT and y > 0
+    private static final long[] HAS_NEXT_ROW = new long[LENGTH];
+    private static final long[] HAS_PREVIOUS_ROW = new long[LENGTH];
+
+    static {
+        for (int i = 0; i < Board.WIDTH * Board.HEIGHT; i++) {
+            int y = i % Board.HEIGHT;
+            if (y + 1 < Board.HEIGHT) HAS_NEXT_ROW[i >> 6] |= 1L << (i & 63);
+            if (y > 0) HAS_PREVIOUS_ROW[i >> 6] |= 1L << (i & 63);
+        }
+    }
+
     private int size;
     private final long[] data;
 
@@ -13,8 +27,7 @@ public class PointSet implements Set<Point> {
     }
 
     public PointSet() {
-        // ceil(20 * 30 / 64) = 10
-        this(0, new long[10]);
+        this(0, new long[LENGTH]);
     }
 
     @Override
@@ -43,6 +56,69 @@ public class PointSet implements Set<Point> {
         return true;
     }
 
+    public void addAll(@NotNull PointSet other) {
+        int newSize = 0;
+        for (int i = 0; i < data.length; i++) {
+            data[i] |= other.data[i];
+            newSize += Long.bitCount(data[i]);
+        }
+        size = newSize;
+    }
+
+    public boolean containsAll(@NotNull PointSet other) {
+        for (int i = 0; i < data.length; i++) {
+            if ((other.data[i] & ~data[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    // This set and all allowed neighbors of its cells, i.e. one step of a flood fill. Neighbors in the same column are next bits,
+    // in the same row they're HEIGHT bits away
+    @NotNull
+    public PointSet grow(@NotNull PointSet allowed) {
+        long[] result = data.clone();
+        or(result, data, HAS_NEXT_ROW, 1);
+        or(result, data, HAS_PREVIOUS_ROW, -1);
+        or(result, data, null, Board.HEIGHT);
+        or(result, data, null, -Board.HEIGHT);
+        int newSize = 0;
+        for (int i = 0; i < result.length; i++) {
+            result[i] &= allowed.data[i] | data[i];
+            newSize += Long.bitCount(result[i]);
+        }
+        return new PointSet(newSize, result);
+    }
+
+    // Cells reachable from this set in at most that many steps through allowed cells
+    @NotNull
+    public PointSet flood(@NotNull PointSet allowed, int steps) {
+        PointSet result = this;
+        for (int i = 0; i < steps; i++) {
+            PointSet next = result.grow(allowed);
+            if (next.size == result.size) break;
+            result = next;
+        }
+        return result;
+    }
+
+    // Ors into the result bits of the source (masked, if mask is not null) moved by shift positions towards higher indices
+    private static void or(@NotNull long[] result, @NotNull long[] source, @Nullable long[] mask, int shift) {
+        int words = Math.abs(shift) >> 6;
+        int bits = Math.abs(shift) & 63;
+        for (int i = 0; i < result.length; i++) {
+            int from = shift > 0 ? i - words : i + words;
+            long word = word(source, mask, from);
+            long carry = bits == 0 ? 0 : shift > 0 ? word(source, mask, from - 1) >>> (64 - bits) :
+                    word(source, mask, from + 1) << (64 - bits);
+            result[i] |= (shift > 0 ? word << bits : word >>> bits) | carry;
+        }
+    }
+
+    private static long word(@NotNull long[] source, @Nullable long[] mask, int i) {
+        if (i < 0 || i >= source.length) return 0;
+        return mask != null ? source[i] & mask[i] : source[i];
+    }
+
     @Override
     public void clear() {
         size = 0;
@@ -50,6 +126,19 @@ public class PointSet implements Set<Point> {
     }
 
 
+    // Point.index() of the cells in the set, in increasing order
+    @NotNull
+    public int[] indices() {
+        int[] result = new int[size];
+        int k = 0;
+        for (int i = 0; i < data.length; i++) {
+            for (long bits = data[i]; bits != 0; bits &= bits - 1) {
+                result[k++] = (i << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return result;
+    }
+
     @NotNull
     public PointSet copy() {
         return new PointSet(size, data.clone());
@@ -76,7 +165,12 @@ public class PointSet implements Set<Point> {
 
     @Override
     public boolean remove(Object o) {
-        throw new UnsupportedOperationException();
+        int i = ((Point) o).index();
+        long k = 1L << (i & 63);
+        if ((data[i >> 6] & k) == 0) return false;
+        data[i >> 6] &= ~k;
+        size--;
+        return true;
     }
 
     @Override
@@ -1,16 +1,24 @@
-import model.Bonus;
 import model.BonusType;
 import model.Direction;
 import model.TrooperStance;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import static model.BonusType.*;
-import static model.TrooperType.SNIPER;
 
 public class Position {
+    public static final int CELL_BITS = 32 - Integer.numberOfLeadingZeros(Board.WIDTH * Board.HEIGHT);
+    public static final int STANCE_BITS = 2;
+    public static final int BONUS_BITS = BonusType.values().length;
+    public static final int HP_BITS = 7;
+    // Bits of the first word of a packed position before the collected bonuses, see pack
+    private static final int HEADER_BITS = CELL_BITS + STANCE_BITS + BONUS_BITS;
+    private static final TrooperStance[] STANCES = TrooperStance.values();
+    // Only so many bonuses fit in the collected bit set, the rest are never collected
+    public static final int MAX_BONUSES = 64;
+
     public final Situation situation;
     public final Point me;
     public final TrooperStance stance;
@@ -18,19 +26,26 @@ public class Position {
     // Indexed by BonusType.ordinal()
     public final int bonuses;
     // Indexed by WarriorTurn.enemies
-    public final int[] enemyHp;
+    public final Hitpoints enemyHp;
     // Indexed by WarriorTurn.allies
-    public final int[] allyHp;
-    // id of collected bonuses
-    public final int[] collected;
+    public final Hitpoints allyHp;
+    // Bit set of indices in situation.bonuses of collected bonuses
+    public final long collected;
     public final PointSet seen;
+    // Zobrist hash of everything equals() looks at, transitions update it incrementally
+    public final long zobrist;
 
-    public final List<Warrior> allies;
-
-    private final int hashCode;
+    // Allies as they are in this position, i.e. with us moved, made on first use. Racing threads make equal lists
+    private List<Warrior> allies;
 
     public Position(@NotNull Situation situation, @NotNull Point me, @NotNull TrooperStance stance, int actionPoints, int bonuses,
-                    @NotNull int[] enemyHp, @NotNull int[] allyHp, @NotNull int[] collected, @NotNull PointSet seen) {
+                    @NotNull Hitpoints enemyHp, @NotNull Hitpoints allyHp, long collected, @NotNull PointSet seen) {
+        this(situation, me, stance, actionPoints, bonuses, enemyHp, allyHp, collected, seen, 0L);
+    }
+
+    private Position(@NotNull Situation situation, @NotNull Point me, @NotNull TrooperStance stance, int actionPoints, int bonuses,
+                     @NotNull Hitpoints enemyHp, @NotNull Hitpoints allyHp, long collected, @NotNull PointSet seen,
+                     long zobrist) {
         this.situation = situation;
         this.me = me;
         this.stance = stance;
@@ -40,17 +55,39 @@ public class Position {
         this.allyHp = allyHp;
         this.collected = collected;
         this.seen = seen;
+        this.zobrist = zobrist != 0L ? zobrist : Zobrist.of(this);
+        assert this.zobrist == Zobrist.of(this) : "Wrong incremental hash: " + this;
+    }
+
+    @NotNull
+    public List<Warrior> allies() {
+        List<Warrior> result = allies;
+        if (result == null) {
+            result = new Allies(situation.allies, new Warrior(situation.self, me, stance));
+            allies = result;
+        }
+        return result;
+    }
 
-        this.allies = new ArrayList<>(situation.allies);
-        this.allies.set(situation.self.index, new Warrior(situation.self, me, stance));
+    // Allies of the situation with self replaced
+    private static class Allies extends AbstractList<Warrior> implements RandomAccess {
+        private final List<Warrior> allies;
+        private final Warrior self;
 
-        int hash = me.hashCode();
-        hash = 31 * hash + stance.ordinal() + 1;
-        hash = 31 * hash + bonuses;
-        hash = 31 * hash + Arrays.hashCode(enemyHp);
-        hash = 31 * hash + Arrays.hashCode(allyHp);
-        hash = 31 * hash + Arrays.hashCode(collected);
-        this.hashCode = hash;
+        private Allies(@NotNull List<Warrior> allies, @NotNull Warrior self) {
+            this.allies = allies;
+            this.self = self;
+        }
+
+        @Override
+        public Warrior get(int index) {
+            return index == self.index ? self : allies.get(index);
+        }
+
+        @Override
+        public int size() {
+            return allies.size();
+        }
     }
 
     public boolean has(@NotNull BonusType bonus) {
@@ -66,48 +103,23 @@ public class Position {
     }
 
     private boolean isPassablePoint(@NotNull Point point) {
-        if (!situation.board.isPassable(point)) return false;
-        for (Warrior ally : allies) {
-            if (point.equals(ally.point)) return false;
-        }
+        if (!situation.free.contains(point)) return false;
+        if (!situation.occupied.contains(point)) return true;
         for (EnemyWarrior enemy : situation.enemies) {
-            if (enemyHp[enemy.index] > 0 && point.equals(enemy.point)) return false;
+            if (enemyHp.get(enemy.index) > 0 && point.equals(enemy.point)) return false;
         }
         return true;
     }
 
-    private double effectiveShootingRange() {
-        double result = situation.self.getShootingRange();
-        if (situation.self.type == SNIPER) {
-            result -= sniperShootingRangeBonus(situation.self.stance);
-            result += sniperShootingRangeBonus(stance);
-        }
-        return result;
-    }
-
-    private double sniperShootingRangeBonus(@NotNull TrooperStance stance) {
-        switch (stance) {
-            case STANDING: return situation.game.getSniperStandingShootingRangeBonus();
-            case KNEELING: return situation.game.getSniperKneelingShootingRangeBonus();
-            case PRONE: return situation.game.getSniperProneShootingRangeBonus();
-            default: throw new IllegalStateException("Sniper is so stealth, he's " + stance);
-        }
-    }
 
     @NotNull
-    public int[] grenadeEffect(@NotNull Point target, @NotNull List<? extends Warrior> warriors, @NotNull int[] hp) {
-        int[] result = null;
+    public Hitpoints grenadeEffect(@NotNull Point target, @NotNull List<? extends Warrior> warriors, @NotNull Hitpoints hp) {
+        Hitpoints result = hp;
         for (Warrior warrior : warriors) {
-            int was = hp[warrior.index];
-            int now = grenadeEffectToTrooper(target, warrior.point, was);
-            if (was != now) {
-                if (result == null) {
-                    result = Arrays.copyOf(hp, hp.length);
-                }
-                result[warrior.index] = now;
-            }
+            int was = hp.get(warrior.index);
+            result = result.with(warrior.index, grenadeEffectToTrooper(target, warrior.point, was));
         }
-        return result != null ? result : hp;
+        return result;
     }
 
     private int grenadeEffectToTrooper(@NotNull Point target, @NotNull Point trooper, int hitpoints) {
@@ -121,29 +133,73 @@ public class Position {
     }
 
     @NotNull
-    private int[] healEffect(int ally, int healingBonus) {
+    private Hitpoints healEffect(int ally, int healingBonus) {
         // Relies on the fact that maximal hitpoints are the same for every trooper
         int maxHp = situation.self.getMaximalHitpoints();
-        int hp = allyHp[ally];
+        int hp = allyHp.get(ally);
         if (hp >= maxHp) return allyHp;
 
-        return IntArrays.replace(allyHp, ally, Math.min(hp + healingBonus, maxHp));
+        return allyHp.with(ally, Math.min(hp + healingBonus, maxHp));
     }
 
-    @Nullable
-    private Bonus maybeCollectBonus(@NotNull Point point) {
-        Bonus bonus = bonusAt(point);
-        return bonus != null && !has(bonus.getType()) ? bonus : null;
+    public boolean isCollected(int bonus) {
+        return bonus < MAX_BONUSES && (collected & (1L << bonus)) != 0;
     }
 
-    @Nullable
-    private Bonus bonusAt(@NotNull Point point) {
-        for (Bonus bonus : situation.bonuses) {
-            if (point.isEqualTo(bonus)) {
-                return IntArrays.contains(collected, (int) bonus.getId()) ? null : bonus;
-            }
+    // Index of the bonus at the point which is not collected yet and which we don't have, or -1
+    private int maybeCollectBonus(@NotNull Point point) {
+        int bonus = bonusAt(point);
+        return bonus >= 0 && !has(situation.bonuses.get(bonus).getType()) ? bonus : -1;
+    }
+
+    private long collect(int bonus) {
+        return bonus >= 0 ? Zobrist.collected(bonus) : 0L;
+    }
+
+    // Index of the bonus at the point which is not collected yet, or -1
+    private int bonusAt(@NotNull Point point) {
+        int bonus = situation.bonusAt(point);
+        return bonus >= 0 && !isCollected(bonus) ? bonus : -1;
+    }
+
+    // Packs everything equals() looks at into situation.keyLength longs starting at key[offset]: cell, stance, bonuses and the
+    // collected bonuses as a set in the first word (and the next one, if there are too many bonuses), then the words of
+    // Hitpoints of allies and of enemies as they are
+    public void pack(@NotNull long[] key, int offset) {
+        int i = offset;
+        key[i++] = me.index() | (long) stance.ordinal() << CELL_BITS | (long) bonuses << (CELL_BITS + STANCE_BITS) |
+                collected << HEADER_BITS;
+        if (HEADER_BITS + situation.bonuses.size() > 64) key[i++] = collected >>> (64 - HEADER_BITS);
+        for (int j = 0, n = Hitpoints.words(allyHp.size()); j < n; j++) {
+            key[i++] = allyHp.word(j);
         }
-        return null;
+        for (int j = 0, n = Hitpoints.words(enemyHp.size()); j < n; j++) {
+            key[i++] = enemyHp.word(j);
+        }
+    }
+
+    // The position packed at key[offset], with what pack leaves out given separately
+    @NotNull
+    public static Position unpack(@NotNull Situation situation, @NotNull long[] key, int offset, int actionPoints,
+                                  @NotNull PointSet seen, long zobrist) {
+        int i = offset;
+        long header = key[i++];
+        Point me = Point.byIndex((int) (header & ((1 << CELL_BITS) - 1)));
+        TrooperStance stance = STANCES[(int) (header >>> CELL_BITS) & ((1 << STANCE_BITS) - 1)];
+        int bonuses = (int) (header >>> (CELL_BITS + STANCE_BITS)) & ((1 << BONUS_BITS) - 1);
+        long collected = header >>> HEADER_BITS;
+        if (HEADER_BITS + situation.bonuses.size() > 64) collected |= key[i++] << (64 - HEADER_BITS);
+        int allies = situation.allies.size();
+        Hitpoints allyHp = Hitpoints.ofWords(allies, key[i++], Hitpoints.words(allies) > 1 ? key[i++] : 0L);
+        int enemies = situation.enemies.size();
+        Hitpoints enemyHp = Hitpoints.ofWords(enemies, key[i++], Hitpoints.words(enemies) > 1 ? key[i++] : 0L);
+        return new Position(situation, me, stance, actionPoints, bonuses, enemyHp, allyHp, collected, seen, zobrist);
+    }
+
+    // Longs needed to pack a position of the situation, see pack
+    public static int keyLength(@NotNull Situation situation) {
+        return (HEADER_BITS + situation.bonuses.size() > 64 ? 2 : 1) +
+                Hitpoints.words(situation.allies.size()) + Hitpoints.words(situation.enemies.size());
     }
 
     @Override
@@ -152,18 +208,17 @@ public class Position {
         if (!(o instanceof Position)) return false;
         Position that = (Position) o;
 
-        return hashCode == that.hashCode &&
-                bonuses == that.bonuses &&
+        return bonuses == that.bonuses &&
                 stance == that.stance &&
                 me.equals(that.me) &&
-                Arrays.equals(allyHp, that.allyHp) &&
-                Arrays.equals(enemyHp, that.enemyHp) &&
-                Arrays.equals(collected, that.collected);
+                allyHp.equals(that.allyHp) &&
+                enemyHp.equals(that.enemyHp) &&
+                collected == that.collected;
     }
 
     @Override
     public int hashCode() {
-        return hashCode;
+        return (int) (zobrist ^ (zobrist >>> 32));
     }
 
     @Override
@@ -186,22 +241,25 @@ public class Position {
         if (ap < 0) return null;
         Point point = me.go(direction);
         if (point == null || !isPassablePoint(point)) return null;
-        Bonus bonus = maybeCollectBonus(point);
-        int newBonuses = bonus == null ? bonuses : with(bonus.getType());
-        int[] newCollected = bonus == null ? collected : IntArrays.add(collected, (int) bonus.getId());
+        int bonus = maybeCollectBonus(point);
+        int newBonuses = bonus < 0 ? bonuses : with(situation.bonuses.get(bonus).getType());
+        long newCollected = bonus < 0 ? collected : collected | (1L << bonus);
         PointSet newSeen = MakeTurn.computeSeenForPosition(situation, point, stance, seen);
-        return new Position(situation, point, stance, ap, newBonuses, enemyHp, allyHp, newCollected, newSeen);
+        long newZobrist = zobrist ^ Zobrist.cell(me) ^ Zobrist.cell(point) ^ Zobrist.bonuses(bonuses ^ newBonuses) ^ collect(bonus);
+        return new Position(situation, point, stance, ap, newBonuses, enemyHp, allyHp, newCollected, newSeen, newZobrist);
     }
 
     @Nullable
     public Position shoot(@NotNull EnemyWarrior enemy) {
         int ap = actionPoints - situation.self.getShootCost();
         if (ap < 0) return null;
-        int hp = enemyHp[enemy.index];
+        int hp = enemyHp.get(enemy.index);
         if (hp == 0) return null;
-        if (!situation.isReachable(effectiveShootingRange(), me, stance, enemy.point, enemy.stance)) return null;
-        int[] newEnemyHp = IntArrays.replace(enemyHp, enemy.index, Math.max(hp - situation.self.getDamage(stance), 0));
-        return new Position(situation, me, stance, ap, bonuses, newEnemyHp, allyHp, collected, seen);
+        if ((situation.shootable(me, stance) & (1 << enemy.index)) == 0) return null;
+        int newHp = Math.max(hp - situation.self.getDamage(stance), 0);
+        Hitpoints newEnemyHp = enemyHp.with(enemy.index, newHp);
+        long newZobrist = zobrist ^ Zobrist.enemyHp(enemy.index, hp) ^ Zobrist.enemyHp(enemy.index, newHp);
+        return new Position(situation, me, stance, ap, bonuses, newEnemyHp, allyHp, collected, seen, newZobrist);
     }
 
     @Nullable
@@ -211,7 +269,8 @@ public class Position {
         TrooperStance newStance = Util.higher(stance);
         if (newStance == null) return null;
         PointSet newSeen = MakeTurn.computeSeenForPosition(situation, me, newStance, seen);
-        return new Position(situation, me, newStance, ap, bonuses, enemyHp, allyHp, collected, newSeen);
+        long newZobrist = zobrist ^ Zobrist.stance(stance) ^ Zobrist.stance(newStance);
+        return new Position(situation, me, newStance, ap, bonuses, enemyHp, allyHp, collected, newSeen, newZobrist);
     }
 
     @Nullable
@@ -221,7 +280,8 @@ public class Position {
         TrooperStance newStance = Util.lower(stance);
         if (newStance == null) return null;
         PointSet newSeen = MakeTurn.computeSeenForPosition(situation, me, newStance, seen);
-        return new Position(situation, me, newStance, ap, bonuses, enemyHp, allyHp, collected, newSeen);
+        long newZobrist = zobrist ^ Zobrist.stance(stance) ^ Zobrist.stance(newStance);
+        return new Position(situation, me, newStance, ap, bonuses, enemyHp, allyHp, collected, newSeen, newZobrist);
     }
 
     @Nullable
@@ -230,13 +290,15 @@ public class Position {
         int ap = actionPoints - situation.game.getGrenadeThrowCost();
         if (ap < 0) return null;
         if (!me.withinEuclidean(target, situation.game.getGrenadeThrowRange())) return null;
-        int[] newEnemyHp = grenadeEffect(target, situation.enemies, enemyHp);
-        if (Arrays.equals(enemyHp, newEnemyHp)) return null;
-        int[] newAllyHp = grenadeEffect(target, allies, allyHp);
-        Bonus bonus = bonusAt(me);
-        int newBonuses = bonus != null ? bonuses : without(GRENADE);
-        int[] newCollected = bonus != null ? IntArrays.add(collected, (int) bonus.getId()) : collected;
-        return new Position(situation, me, stance, ap, newBonuses, newEnemyHp, newAllyHp, newCollected, seen);
+        Hitpoints newEnemyHp = grenadeEffect(target, situation.enemies, enemyHp);
+        if (enemyHp.equals(newEnemyHp)) return null;
+        Hitpoints newAllyHp = grenadeEffect(target, allies(), allyHp);
+        int bonus = bonusAt(me);
+        int newBonuses = bonus >= 0 ? bonuses : without(GRENADE);
+        long newCollected = bonus >= 0 ? collected | (1L << bonus) : collected;
+        long newZobrist = zobrist ^ Zobrist.enemyHp(enemyHp, newEnemyHp) ^ Zobrist.allyHp(allyHp, newAllyHp) ^
+                Zobrist.bonuses(bonuses ^ newBonuses) ^ collect(bonus);
+        return new Position(situation, me, stance, ap, newBonuses, newEnemyHp, newAllyHp, newCollected, seen, newZobrist);
     }
 
     @Nullable
@@ -244,15 +306,16 @@ public class Position {
         if (!has(MEDIKIT)) return null;
         int ap = actionPoints - situation.game.getMedikitUseCost();
         if (ap < 0) return null;
-        int[] newAllyHp;
+        Hitpoints newAllyHp;
         if (ally.point.equals(me)) newAllyHp = healEffect(ally.index, situation.game.getMedikitHealSelfBonusHitpoints());
         else if (ally.point.isNeighbor(me)) newAllyHp = healEffect(ally.index, situation.game.getMedikitBonusHitpoints());
         else return null;
-        if (Arrays.equals(allyHp, newAllyHp)) return null;
-        Bonus bonus = bonusAt(me);
-        int newBonuses = bonus != null ? bonuses : without(MEDIKIT);
-        int[] newCollected = bonus != null ? IntArrays.add(collected, (int) bonus.getId()) : collected;
-        return new Position(situation, me, stance, ap, newBonuses, enemyHp, newAllyHp, newCollected, seen);
+        if (allyHp.equals(newAllyHp)) return null;
+        int bonus = bonusAt(me);
+        int newBonuses = bonus >= 0 ? bonuses : without(MEDIKIT);
+        long newCollected = bonus >= 0 ? collected | (1L << bonus) : collected;
+        long newZobrist = zobrist ^ Zobrist.allyHp(allyHp, newAllyHp) ^ Zobrist.bonuses(bonuses ^ newBonuses) ^ collect(bonus);
+        return new Position(situation, me, stance, ap, newBonuses, enemyHp, newAllyHp, newCollected, seen, newZobrist);
     }
 
     @Nullable
@@ -262,21 +325,23 @@ public class Position {
         int ap = actionPoints - situation.game.getFieldRationEatCost();
         if (ap < 0) return null;
         ap = Math.min(situation.self.getInitialActionPoints(), ap + situation.game.getFieldRationBonusActionPoints());
-        Bonus bonus = bonusAt(me);
-        int newBonuses = bonus != null ? bonuses : without(FIELD_RATION);
-        int[] newCollected = bonus != null ? IntArrays.add(collected, (int) bonus.getId()) : collected;
-        return new Position(situation, me, stance, ap, newBonuses, enemyHp, allyHp, newCollected, seen);
+        int bonus = bonusAt(me);
+        int newBonuses = bonus >= 0 ? bonuses : without(FIELD_RATION);
+        long newCollected = bonus >= 0 ? collected | (1L << bonus) : collected;
+        long newZobrist = zobrist ^ Zobrist.bonuses(bonuses ^ newBonuses) ^ collect(bonus);
+        return new Position(situation, me, stance, ap, newBonuses, enemyHp, allyHp, newCollected, seen, newZobrist);
     }
 
     @Nullable
     public Position heal(@NotNull Warrior ally) {
         int ap = actionPoints - situation.game.getFieldMedicHealCost();
         if (ap < 0) return null;
-        int[] newAllyHp;
+        Hitpoints newAllyHp;
         if (ally.point.equals(me)) newAllyHp = healEffect(ally.index, situation.game.getFieldMedicHealSelfBonusHitpoints());
         else if (ally.point.isNeighbor(me)) newAllyHp = healEffect(ally.index, situation.game.getFieldMedicHealBonusHitpoints());
         else return null;
-        if (Arrays.equals(allyHp, newAllyHp)) return null;
-        return new Position(situation, me, stance, ap, bonuses, enemyHp, newAllyHp, collected, seen);
+        if (allyHp.equals(newAllyHp)) return null;
+        long newZobrist = zobrist ^ Zobrist.allyHp(allyHp, newAllyHp);
+        return new Position(situation, me, stance, ap, bonuses, enemyHp, newAllyHp, collected, seen, newZobrist);
     }
 }
@@ -1,6 +1,10 @@
+import model.BonusType;
+import model.TrooperStance;
 import model.TrooperType;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static model.BonusType.*;
 import static model.TrooperStance.STANDING;
@@ -11,9 +15,16 @@ public abstract class Scorer {
     protected final Const coeff;
 
     protected final Warrior commanderSituation;
+    // Whether the terms of every situation (hitpoints of allies, aura, points seen, etc.) are scored along with its own ones
+    private final boolean commonTerms;
 
     public Scorer(@NotNull Situation situation) {
+        this(situation, true);
+    }
+
+    protected Scorer(@NotNull Situation situation, boolean commonTerms) {
         this.situation = situation;
+        this.commonTerms = commonTerms;
         this.coeff = situation.army.coeff;
 
         Warrior commander = null;
@@ -26,29 +37,103 @@ public abstract class Scorer {
         this.commanderSituation = commander;
     }
 
+    // Value of a position and an upper bound on the value of any position reachable from it till the end of the turn
+    public static class Estimate {
+        public final double value;
+        public final double bound;
+
+        private Estimate(double value, double bound) {
+            this.value = value;
+            this.bound = bound;
+        }
+    }
+
     public final double evaluate(@NotNull Position p) {
+        return score(p, null);
+    }
+
+    @NotNull
+    public final Estimate estimate(@NotNull Position p) {
+        Headroom headroom = new Headroom(situation, p);
+        double value = score(p, headroom);
+        return new Estimate(value, value + headroom.total());
+    }
+
+    // Every term adds to the headroom (if it's given) how much it could possibly grow from p till the end of the turn
+    private double score(@NotNull Position p, @Nullable Headroom headroom) {
+        if (!commonTerms) return situationSpecificScore(p, headroom);
+
         double result = 0;
 
         result += coeff.weightedHpOfAllies * weightedHpOfAllies(p.allyHp);
+        if (headroom != null && headroom.healing > 0) {
+            headroom.add(coeff.weightedHpOfAllies * (weightedHpOfAllies(healedHpOfAllies(p, headroom)) - weightedHpOfAllies(p.allyHp)));
+        }
 
         if (situation.self.type == FIELD_MEDIC) {
             // TODO: or if have a medikit
-            result -= coeff.medicDistanceToWoundedAllies * distanceToWoundedAllies(p);
+            double distance = distanceToWoundedAllies(p);
+            result -= coeff.medicDistanceToWoundedAllies * distance;
+            if (headroom != null && (headroom.steps > 0 || headroom.healing > 0)) {
+                headroom.add(coeff.medicDistanceToWoundedAllies * distance);
+            }
         }
 
-        result += coeff.underCommanderAura * underCommanderAura(p);
+        int aura = underCommanderAura(p);
+        result += coeff.underCommanderAura * aura;
+        if (headroom != null && headroom.steps > 0) headroom.add(coeff.underCommanderAura * (maxUnderCommanderAura() - aura));
 
         result += coeff.pointsSeen * p.seen.size();
+        if (headroom != null && headroom.canRelocate() && !situation.effort.drops(Effort.Level.LIGHT)) {
+            headroom.add(coeff.pointsSeen * (situation.board.passableCount() - p.seen.size()));
+        }
 
         if (4 <= situation.world.getMoveIndex() && situation.world.getMoveIndex() <= 32) {
             result -= coeff.stance * p.stance.ordinal();
+            if (headroom != null) headroom.add(coeff.stance * Math.min(p.stance.ordinal(), headroom.stanceChanges));
         }
 
-        result += situationSpecificScore(p);
+        result += situationSpecificScore(p, headroom);
+
+        return result;
+    }
 
+    private int maxUnderCommanderAura() {
+        if (situation.self.type != COMMANDER) {
+            return commanderSituation == null || situation.self.type == SCOUT ? 0 : 1;
+        }
+        int result = 0;
+        for (Warrior ally : situation.allies) {
+            if (ally.type != COMMANDER && ally.type != SCOUT) result++;
+        }
+        return result;
+    }
+
+    // Spends all possible healing where it's worth the most in weightedHpOfAllies, i.e. below maxHpToHeal first
+    @NotNull
+    private Hitpoints healedHpOfAllies(@NotNull Position p, @NotNull Headroom headroom) {
+        Hitpoints result = p.allyHp;
+        int healing = headroom.healing;
+        for (int pass = 0; pass < 2 && healing > 0; pass++) {
+            for (Warrior ally : p.allies()) {
+                int hp = result.get(ally.index);
+                if (hp == 0 || !headroom.canTouch(ally.point)) continue;
+                int upTo = pass == 0 ? Math.max(hp, (int) coeff.maxHpToHeal) : ally.getMaximalHitpoints();
+                int heal = Math.min(healing, Math.max(Math.min(upTo, ally.getMaximalHitpoints()) - hp, 0));
+                result = result.with(ally.index, hp + heal);
+                healing -= heal;
+            }
+        }
         return result;
     }
 
+    protected void addBonusesHeadroom(@Nullable Headroom headroom, @NotNull double... coefficients) {
+        if (headroom == null) return;
+        for (int i = 0; i < coefficients.length; i++) {
+            if ((headroom.bonusesToPick & (1 << i)) != 0) headroom.add(coefficients[i]);
+        }
+    }
+
     private int underCommanderAura(@NotNull Position p) {
         double auraRange = situation.game.getCommanderAuraRange();
 
@@ -58,7 +143,7 @@ public abstract class Scorer {
         }
 
         int result = 0;
-        for (Warrior ally : p.allies) {
+        for (Warrior ally : p.allies()) {
             if (ally.type != COMMANDER && ally.type != SCOUT) {
                 if (ally.point.withinEuclidean(p.me, auraRange)) result++;
             }
@@ -66,9 +151,10 @@ public abstract class Scorer {
         return result;
     }
 
-    private double weightedHpOfAllies(@NotNull int[] allyHp) {
+    protected double weightedHpOfAllies(@NotNull Hitpoints allyHp) {
         double result = 0;
-        for (int hp : allyHp) {
+        for (int i = 0, n = allyHp.size(); i < n; i++) {
+            int hp = allyHp.get(i);
             // TODO: these coefficients
             result += 2 * Math.min(hp, coeff.maxHpToHeal) + 0.2 * Math.max(hp - coeff.maxHpToHeal, 0);
         }
@@ -81,7 +167,7 @@ public abstract class Scorer {
             if (ally.equals(situation.self)) continue;
             Integer dist = situation.board.distance(ally.point, p.me);
             if (dist == null || dist == 0) continue;
-            int toHeal = ally.getMaximalHitpoints() - p.allyHp[ally.index];
+            int toHeal = ally.getMaximalHitpoints() - p.allyHp.get(ally.index);
             if (toHeal > 60) result += 3 * dist;
             else if (toHeal > 15) result += dist;
             else if (toHeal > 0) result += 0.1 * dist;
@@ -89,85 +175,155 @@ public abstract class Scorer {
         return result;
     }
 
-    protected abstract double situationSpecificScore(@NotNull Position p);
+    protected abstract double situationSpecificScore(@NotNull Position p, @Nullable Headroom headroom);
 
     public static class Leader extends Scorer {
         private final Point wayPoint;
+        // Indexed by cell self may get to this turn: distance to the way point and the number of far away teammates, -1 elsewhere.
+        // Filled for all those cells at once on first use, see Situation.reachableInAnyStance
+        private volatile int[] cells;
 
         public Leader(@NotNull Situation situation) {
             super(situation);
-            wayPoint = situation.army.getOrUpdateWayPoint(situation);
+            wayPoint = wayPoint(situation);
         }
 
         @Override
-        protected double situationSpecificScore(@NotNull Position p) {
+        protected double situationSpecificScore(@NotNull Position p, @Nullable Headroom headroom) {
             double result = 0;
 
             if (p.has(GRENADE)) result += coeff.hasGrenadeInMovement;
             if (p.has(MEDIKIT)) result += coeff.hasMedikitInMovement;
             if (p.has(FIELD_RATION)) result += coeff.hasFieldRationInMovement;
+            addBonusesHeadroom(headroom, coeff.hasGrenadeInMovement, coeff.hasMedikitInMovement, coeff.hasFieldRationInMovement);
 
-            result -= coeff.leaderDistanceToWayPoint * distanceToWayPoint(p);
+            int[] cells = cells();
+            int index = p.me.index();
+            int distance = cells[2 * index] >= 0 ? cells[2 * index] : distanceToWayPoint(p.me);
+            result -= coeff.leaderDistanceToWayPoint * distance;
 
-            result -= coeff.leaderFarAwayTeammates * farAwayTeammates(p);
+            int farAway = cells[2 * index + 1] >= 0 ? cells[2 * index + 1] : farAwayTeammates(p.me);
+            result -= coeff.leaderFarAwayTeammates * farAway;
 
+            if (headroom != null && headroom.steps > 0) {
+                // Unreachable way point stays unreachable
+                if (distance < 1000) headroom.add(coeff.leaderDistanceToWayPoint * Math.min(headroom.steps, distance));
+                headroom.add(coeff.leaderFarAwayTeammates * farAway);
+            }
+
+            return result;
+        }
+
+        // Only the real turn moves the army on to the next way point
+        @NotNull
+        private static Point wayPoint(@NotNull Situation situation) {
+            return situation.speculative ? situation.army.getWayPoint(situation) : situation.army.getOrUpdateWayPoint(situation);
+        }
+
+        @NotNull
+        private int[] cells() {
+            int[] result = cells;
+            if (result == null) {
+                result = new int[2 * Board.WIDTH * Board.HEIGHT];
+                Arrays.fill(result, -1);
+                for (int index : situation.reachableInAnyStance().indices()) {
+                    Point point = Point.byIndex(index);
+                    result[2 * index] = distanceToWayPoint(point);
+                    result[2 * index + 1] = farAwayTeammates(point);
+                }
+                cells = result;
+            }
             return result;
         }
 
-        private int farAwayTeammates(@NotNull Position p) {
+        private int farAwayTeammates(@NotNull Point point) {
             int result = 0;
             for (Warrior ally : situation.allies) {
                 if (ally.equals(situation.self)) continue;
-                Integer distance = situation.board.distance(ally.point, p.me);
+                Integer distance = situation.board.distance(ally.point, point);
                 if (distance != null && distance > coeff.leaderCriticalDistanceToAllies) result++;
             }
             return result;
         }
 
-        private int distanceToWayPoint(@NotNull Position p) {
-            Integer dist = situation.board.distance(p.me, wayPoint);
+        private int distanceToWayPoint(@NotNull Point point) {
+            // Distances from the way point are the same as to it, and it's one distance map for all positions
+            Integer dist = situation.board.distance(wayPoint, point);
             return dist != null ? dist : 1000;
         }
     }
 
     public static class Follower extends Scorer {
         private final Point leader;
-        private final List<Point> leaderPath;
+        private final PointSet leaderPath = new PointSet();
+        // Indexed by cell self may get to this turn: distance to the leader, or -1 if there's none. Filled for all those cells at
+        // once on first use, see Situation.reachableInAnyStance
+        private volatile int[] distances;
 
         public Follower(@NotNull Situation situation, @NotNull Warrior leader) {
             super(situation);
             this.leader = leader.point;
-            List<Point> leaderPath = situation.board.findPath(this.leader, situation.army.getOrUpdateWayPoint(situation));
-            this.leaderPath = leaderPath == null ? Collections.<Point>emptyList() : leaderPath;
+            List<Point> leaderPath = situation.board.findPath(this.leader, Leader.wayPoint(situation));
+            if (leaderPath != null) {
+                for (Point point : leaderPath) {
+                    this.leaderPath.add(point);
+                }
+            }
         }
 
         @Override
-        protected double situationSpecificScore(@NotNull Position p) {
+        protected double situationSpecificScore(@NotNull Position p, @Nullable Headroom headroom) {
             double result = 0;
 
             if (p.has(GRENADE)) result += coeff.hasGrenadeInMovement;
             if (p.has(MEDIKIT)) result += coeff.hasMedikitInMovement;
             if (p.has(FIELD_RATION)) result += coeff.hasFieldRationInMovement;
+            addBonusesHeadroom(headroom, coeff.hasGrenadeInMovement, coeff.hasMedikitInMovement, coeff.hasFieldRationInMovement);
 
-            Integer dist = situation.board.distance(p.me, leader);
+            Integer dist = distanceToLeader(p.me);
             if (dist != null) result -= coeff.followerDistanceToLeader * dist;
 
-            if (isBlockingLeader(p)) result -= coeff.isFollowerBlockingLeader;
+            boolean blocking = isBlockingLeader(p);
+            if (blocking) result -= coeff.isFollowerBlockingLeader;
+
+            if (headroom != null && headroom.steps > 0) {
+                if (dist != null) headroom.add(coeff.followerDistanceToLeader * Math.min(headroom.steps, dist));
+                if (blocking) headroom.add(coeff.isFollowerBlockingLeader);
+            }
 
             return result;
         }
 
-        private boolean isBlockingLeader(@NotNull Position p) {
-            for (Point point : leaderPath) {
-                if (p.me.equals(point)) return true;
+        @Nullable
+        private Integer distanceToLeader(@NotNull Point point) {
+            int[] distances = this.distances;
+            if (distances == null) {
+                distances = new int[Board.WIDTH * Board.HEIGHT];
+                Arrays.fill(distances, -1);
+                for (int index : situation.reachableInAnyStance().indices()) {
+                    Integer dist = situation.board.distance(leader, Point.byIndex(index));
+                    if (dist != null) distances[index] = dist;
+                }
+                this.distances = distances;
             }
-            return false;
+            int dist = distances[point.index()];
+            return dist >= 0 ? dist : situation.board.distance(leader, point);
+        }
+
+        private boolean isBlockingLeader(@NotNull Position p) {
+            return leaderPath.contains(p.me);
         }
     }
 
     public static class CombatSituation extends Scorer {
         private final Map<Long, Integer> enemyTeams = new HashMap<>(6);
-        private final PointMap<Integer> map = new PointMap<>();
+
+        // Indexed by enemy: hitpoints of our troopers after his best response, by layout of our troopers, see enemyResponse
+        private final List<ConcurrentMap<ResponseKey, Hitpoints>> responses;
+        // Once it expires, expectedDamageOnNextTurn falls back to guessing what enemies will do
+        private final Deadline responseDeadline;
+        // Values of nextAllyTurn by everything it depends on, see NextAllyTurnKey
+        private final ConcurrentMap<NextAllyTurnKey, Double> nextAllyTurns = new ConcurrentHashMap<>();
 
         public CombatSituation(@NotNull Situation situation) {
             super(situation);
@@ -177,48 +333,98 @@ public abstract class Scorer {
                     enemyTeams.put(id, enemyTeams.size());
                 }
             }
+
+            this.responses = new ArrayList<>(situation.enemies.size());
+            for (int i = 0; i < situation.enemies.size(); i++) {
+                responses.add(new ConcurrentHashMap<ResponseKey, Hitpoints>());
+            }
+            this.responseDeadline = coeff.enemyResponse && !situation.lightVersion ?
+                    situation.deadline.within(coeff.enemyResponseBudgetMillis) : null;
         }
 
         @Override
-        protected double situationSpecificScore(@NotNull Position p) {
+        protected double situationSpecificScore(@NotNull Position p, @Nullable Headroom headroom) {
             double result = 0;
 
-            result -= coeff.enemyHp * IntArrays.sum(p.enemyHp);
-            result += coeff.killEnemy * IntArrays.numberOfZeros(p.enemyHp);
+            int enemyHp = p.enemyHp.sum();
+            result -= coeff.enemyHp * enemyHp;
+            result += coeff.killEnemy * p.enemyHp.numberOfZeros();
 
-            result -= coeff.expectedDamageOnNextTurn * expectedDamageOnNextTurn(p);
+            double expectedDamage = expectedDamageOnNextTurn(p);
+            result -= coeff.expectedDamageOnNextTurn * expectedDamage;
 
             result += coeff.bonusInCombat * Integer.bitCount(p.bonuses);
 
             result -= coeff.distanceToAlliesInCombat * distanceToAllies(p);
 
-            if (!situation.lightVersion) {
-                if (situation.army.isOrderComplete()) {
-                    result += coeff.combatNextAllyTurn * nextAllyTurn(p);
+            if (headroom != null) {
+                headroom.add(coeff.enemyHp * Math.min(headroom.damage, enemyHp));
+                headroom.add(coeff.killEnemy * headroom.kills(p.enemyHp));
+                if (headroom.canRelocate() || headroom.damage > 0) headroom.add(coeff.expectedDamageOnNextTurn * expectedDamage);
+                headroom.add(coeff.bonusInCombat * Integer.bitCount(headroom.bonusesToPick));
+                if (headroom.steps > 0) headroom.add(coeff.distanceToAlliesInCombat * distanceToAllies(p, headroom.steps));
+            }
+
+            Effort effort = situation.effort;
+            if (!effort.drops(Effort.Level.NO_NESTED_SEARCHES) && situation.army.isOrderComplete()) {
+                double nextAllyTurn = nextAllyTurn(p);
+                result += coeff.combatNextAllyTurn * nextAllyTurn;
+                if (headroom != null && headroom.actionPoints > 0) {
+                    headroom.add(coeff.combatNextAllyTurn * Math.max(maxNextAllyTurn(p) - nextAllyTurn, 0));
                 }
+            }
 
-                result += coeff.shootablePoints * shootablePoints(p);
+            if (!effort.drops(Effort.Level.NO_SHOOTABLE_POINTS)) {
+                double shootablePoints = shootablePoints(p);
+                result += coeff.shootablePoints * shootablePoints;
+                if (headroom != null && headroom.canRelocate()) {
+                    headroom.add(coeff.shootablePoints * (situation.board.passableCount() - shootablePoints));
+                }
+            }
 
+            if (!effort.drops(Effort.Level.LIGHT)) {
                 // TODO: only if high hp?
-                result += coeff.combatVisibleEnemies * visibleEnemies(p);
+                int visibleEnemies = visibleEnemies(p);
+                result += coeff.combatVisibleEnemies * visibleEnemies;
+
+                int enemyTeamsThatSeeUs = enemyTeamsThatSeeUs(p);
+                result -= coeff.enemyTeamsThatSeeUs * enemyTeamsThatSeeUs;
 
-                result -= coeff.enemyTeamsThatSeeUs * enemyTeamsThatSeeUs(p);
+                if (headroom != null && headroom.canRelocate()) {
+                    headroom.add(coeff.combatVisibleEnemies * (situation.enemies.size() - visibleEnemies));
+                    headroom.add(coeff.enemyTeamsThatSeeUs * enemyTeamsThatSeeUs);
+                } else if (headroom != null && headroom.damage > 0) {
+                    headroom.add(coeff.enemyTeamsThatSeeUs * enemyTeamsThatSeeUs);
+                }
             }
 
             return result;
         }
 
+        // Upper bound on what the nested scorer of the next ally can return: its other terms are all penalties
+        private double maxNextAllyTurn(@NotNull Position p) {
+            int[] fullHp = new int[p.allyHp.size()];
+            for (Warrior ally : situation.allies) {
+                if (p.allyHp.get(ally.index) > 0) fullHp[ally.index] = ally.getMaximalHitpoints();
+            }
+            return coeff.weightedHpOfAllies * weightedHpOfAllies(Hitpoints.of(fullHp)) +
+                    coeff.underCommanderAura * (situation.allies.size() - 1) +
+                    coeff.pointsSeen * situation.board.passableCount() +
+                    coeff.killEnemy * situation.enemies.size() +
+                    coeff.bonusInCombat * BonusType.values().length;
+        }
+
         private double shootablePoints(@NotNull Position p) {
-            map.clear();
-            for (Warrior warrior : p.allies) {
+            // Not a field, since positions may be evaluated by several threads at once
+            PointSet points = new PointSet();
+            for (Warrior warrior : p.allies()) {
                 for (Point point : situation.board.allPassable()) {
                     if (situation.isReachable(warrior.getShootingRange(), warrior.point, warrior.stance, point, STANDING)) {
-                        Integer old = map.get(point);
-                        map.put(point, old != null ? 2 * old + 1 : 1);
+                        points.add(point);
                     }
                 }
             }
-            return map.size();
+            return points.size();
         }
 
         // Returns number of visible enemies or their corpses from those who were seen in the beginning of the turn (situation)
@@ -226,7 +432,7 @@ public abstract class Scorer {
         private int visibleEnemies(@NotNull Position p) {
             int result = 0;
             outer: for (EnemyWarrior enemy : situation.enemies) {
-                for (Warrior ally : p.allies) {
+                for (Warrior ally : p.allies()) {
                     // TODO: not very accurate, as kneeling or prone enemy sniper decreases (!) our vision range towards him
                     if (situation.isReachable(ally.getVisionRange(), ally.point, ally.stance, enemy.point, enemy.stance)) {
                         result++;
@@ -238,13 +444,58 @@ public abstract class Scorer {
         }
 
         private double nextAllyTurn(@NotNull Position p) {
+            NextAllyTurnKey key = new NextAllyTurnKey(p);
+            Double cached = nextAllyTurns.get(key);
+            if (cached != null) return cached;
+
+            // Each nested search may take only a share of the time left, so that the outer one gets further than its start
+            Deadline deadline = situation.deadline.share(coeff.nestedSearchShare);
+            double result = computeNextAllyTurn(p, deadline);
+            // A search cut short by the deadline depends on when it happened
+            if (!deadline.isExpired()) nextAllyTurns.putIfAbsent(key, result);
+            return result;
+        }
+
+        // The nested search sees our trooper's cell and stance, hitpoints and collected bonuses, the next ally and his action
+        // points follow from these. Action points left, bonuses held and cells seen by our trooper don't matter to it. The hash
+        // of the position without its bonuses only picks the bucket, the fields themselves are compared
+        private static final class NextAllyTurnKey {
+            private final Point me;
+            private final TrooperStance stance;
+            private final long collected;
+            private final Hitpoints allyHp;
+            private final Hitpoints enemyHp;
+            private final long hash;
+
+            private NextAllyTurnKey(@NotNull Position p) {
+                this.me = p.me;
+                this.stance = p.stance;
+                this.collected = p.collected;
+                this.allyHp = p.allyHp;
+                this.enemyHp = p.enemyHp;
+                this.hash = p.zobrist ^ Zobrist.bonuses(p.bonuses);
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof NextAllyTurnKey)) return false;
+                NextAllyTurnKey that = (NextAllyTurnKey) o;
+                return hash == that.hash && collected == that.collected && stance == that.stance && me.equals(that.me) &&
+                        allyHp.equals(that.allyHp) && enemyHp.equals(that.enemyHp);
+            }
+
+            @Override
+            public int hashCode() {
+                return (int) (hash ^ (hash >>> 32));
+            }
+        }
+
+        private double computeNextAllyTurn(@NotNull Position p, @NotNull Deadline deadline) {
             Warrior nextAlly = nextAllyToMakeTurn(p);
             if (nextAlly == null) return 0;
 
-            List<Warrior> allies = new ArrayList<>(situation.allies);
-            allies.set(situation.self.index, new Warrior(situation.self, p.me, p.stance));
-
-            Situation next = new Situation(situation, nextAlly.type, allies);
+            Situation next = new Situation(situation, nextAlly.type, p.allies(), deadline);
 
             Position start = new Position(next, nextAlly.point, nextAlly.stance, nextAllyInitialActionPoints(p, nextAlly),
                     MakeTurn.computeBonusesBitSet(nextAlly.trooper /* TODO: deprecate? here it's safe though */), p.enemyHp, p.allyHp, p.collected,
@@ -280,8 +531,8 @@ public abstract class Scorer {
             int myIndex = order.indexOf(situation.self.type);
             for (int i = 1; i < order.size(); i++) {
                 TrooperType type = order.get((myIndex + i) % order.size());
-                for (Warrior ally : p.allies) {
-                    if (p.allyHp[ally.index] > 0 && ally.type == type) return ally;
+                for (Warrior ally : p.allies()) {
+                    if (p.allyHp.get(ally.index) > 0 && ally.type == type) return ally;
                 }
             }
             return null;
@@ -290,8 +541,8 @@ public abstract class Scorer {
         private int enemyTeamsThatSeeUs(@NotNull Position p) {
             int bitset = 0;
             outer: for (EnemyWarrior enemy : situation.enemies) {
-                if (p.enemyHp[enemy.index] <= 0) continue;
-                for (Warrior ally : p.allies) {
+                if (p.enemyHp.get(enemy.index) <= 0) continue;
+                for (Warrior ally : p.allies()) {
                     if (situation.isReachable(enemy.getVisionRange(), enemy.point, enemy.stance, ally.point, ally.stance)) {
                         bitset |= 1 << enemyTeams.get(enemy.getPlayerId());
                         continue outer;
@@ -302,11 +553,16 @@ public abstract class Scorer {
         }
 
         private double distanceToAllies(@NotNull Position p) {
+            return distanceToAllies(p, Integer.MAX_VALUE);
+        }
+
+        // Each distance is capped, which is how much it can decrease after that many steps
+        private double distanceToAllies(@NotNull Position p, int cap) {
             double result = 0;
             for (Warrior ally : situation.allies) {
                 if (ally.equals(situation.self)) continue;
                 Integer dist = situation.board.distance(ally.point, p.me);
-                if (dist != null) result += dist;
+                if (dist != null) result += Math.min(dist, cap);
             }
             return result;
         }
@@ -315,37 +571,46 @@ public abstract class Scorer {
             // Assume that all enemies see us, but this is not always true
             // TODO: count number of other teams having at least one trooper who sees us
 
-            List<Warrior> allies = p.allies;
-            int[] allyHp = p.allyHp;
+            List<Warrior> allies = p.allies();
+            Hitpoints allyHp = p.allyHp;
             int n = allies.size();
 
             double[] expectedDamage = new double[n];
 
             for (EnemyWarrior enemy : situation.enemies) {
-                if (p.enemyHp[enemy.index] <= 0) continue;
+                if (p.enemyHp.get(enemy.index) <= 0) continue;
 
                 int actionPoints = enemy.getInitialActionPoints();
                 if (enemy.type != COMMANDER && enemy.type != SCOUT) {
                     // Assume that the enemy trooper always is in the commander aura
                     actionPoints += situation.game.getCommanderAuraBonusActionPoints();
                 }
+
+                Hitpoints response = enemyResponse(p, enemy, actionPoints);
+                if (response != null) {
+                    for (int i = 0; i < n; i++) {
+                        expectedDamage[i] += allyHp.get(i) - response.get(i);
+                    }
+                    continue;
+                }
+
                 if (enemy.isHoldingFieldRation()) {
                     actionPoints += situation.game.getFieldRationBonusActionPoints() - situation.game.getFieldRationEatCost();
                 }
 
-                if (!situation.lightVersion) {
+                if (!situation.effort.drops(Effort.Level.LIGHT)) {
                     if (enemy.isHoldingGrenade() && actionPoints >= situation.game.getGrenadeThrowCost()) {
                         double grenadeThrowRange = situation.game.getGrenadeThrowRange();
-                        int[] best = allyHp;
+                        Hitpoints best = allyHp;
                         int maxScore = 0;
                         for (Warrior ally : allies) {
                             Point target = ally.point;
                             if (enemy.point.withinEuclidean(target, grenadeThrowRange)) {
-                                int[] hp = p.grenadeEffect(target, allies, allyHp);
+                                Hitpoints hp = p.grenadeEffect(target, allies, allyHp);
                                 int score = 0;
                                 for (int i = 0; i < n; i++) {
-                                    score += allyHp[i] - hp[i];
-                                    if (hp[i] == 0) score += coeff.killEnemy;
+                                    score += allyHp.get(i) - hp.get(i);
+                                    if (hp.get(i) == 0) score += coeff.killEnemy;
                                 }
 
                                 if (score > maxScore) {
@@ -357,8 +622,8 @@ public abstract class Scorer {
                         // Assume that he'll only throw grenade if it'll bring more than 60 of damage
                         if (maxScore > 60) {
                             actionPoints -= situation.game.getGrenadeThrowCost();
-                            for (int i = 0; i < allyHp.length; i++) {
-                                expectedDamage[i] += allyHp[i] - best[i];
+                            for (int i = 0; i < n; i++) {
+                                expectedDamage[i] += allyHp.get(i) - best.get(i);
                             }
                         }
                     }
@@ -387,7 +652,85 @@ public abstract class Scorer {
 
             double result = 0.;
             for (int i = 0; i < n; i++) {
-                result += Math.min(expectedDamage[i], allyHp[i]);
+                result += Math.min(expectedDamage[i], allyHp.get(i));
+            }
+
+            return result;
+        }
+
+        // Hitpoints of our troopers after the turn of the enemy who does the most damage he can to them, or null if there's no
+        // time left to find out
+        @Nullable
+        private Hitpoints enemyResponse(@NotNull Position p, @NotNull EnemyWarrior enemy, int actionPoints) {
+            if (responseDeadline == null || situation.effort.drops(Effort.Level.NO_NESTED_SEARCHES)) return null;
+
+            ConcurrentMap<ResponseKey, Hitpoints> cache = responses.get(enemy.index);
+            ResponseKey key = new ResponseKey(p, p.enemyHp.get(enemy.index));
+            Hitpoints result = cache.get(key);
+            if (result != null || responseDeadline.isExpired()) return result;
+
+            Situation response = new Situation(situation, enemy, p, responseDeadline);
+            Position start = new Position(response, enemy.point, enemy.stance, actionPoints, MakeTurn.computeBonusesBitSet(enemy.trooper),
+                    p.allyHp, Hitpoints.of(p.enemyHp.get(enemy.index)), 0L, new PointSet());
+            result = MakeTurn.best(response, start).first.enemyHp;
+            // The search has been cut short, so it's not known whether that's the best he can do
+            if (responseDeadline.isExpired()) return null;
+
+            cache.putIfAbsent(key, result);
+            return result;
+        }
+
+        // The response sees our troopers' hitpoints and his own. Other allies are where they were in the beginning of the turn, so
+        // of the cells and stances only those of our trooper are in the key
+        private static final class ResponseKey {
+            private final Point me;
+            private final TrooperStance stance;
+            private final int hitpoints;
+            private final Hitpoints allyHp;
+
+            private ResponseKey(@NotNull Position p, int hitpoints) {
+                this.me = p.me;
+                this.stance = p.stance;
+                this.hitpoints = hitpoints;
+                this.allyHp = p.allyHp;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof ResponseKey)) return false;
+                ResponseKey that = (ResponseKey) o;
+                return hitpoints == that.hitpoints && stance == that.stance && me.equals(that.me) && allyHp.equals(that.allyHp);
+            }
+
+            @Override
+            public int hashCode() {
+                return ((me.index() * 3 + stance.ordinal()) * 31 + hitpoints) * 31 + allyHp.hashCode();
+            }
+        }
+    }
+
+    // Scorer of the enemy's turn in the Situation of his response: only the damage he deals to our troopers, of whom killing one
+    // is worth as much as it is worth to us to kill an enemy. Where he ends up and how doesn't matter here
+    public static class EnemyResponse extends Scorer {
+        private final Hitpoints hitpoints;
+
+        public EnemyResponse(@NotNull Situation situation, @NotNull Hitpoints hitpoints) {
+            super(situation, false);
+            this.hitpoints = hitpoints;
+        }
+
+        @Override
+        protected double situationSpecificScore(@NotNull Position p, @Nullable Headroom headroom) {
+            double result = 0;
+            for (int i = 0, n = hitpoints.size(); i < n; i++) {
+                result += hitpoints.get(i) - p.enemyHp.get(i);
+                if (hitpoints.get(i) > 0 && p.enemyHp.get(i) == 0) result += coeff.killEnemy;
+            }
+
+            if (headroom != null) {
+                headroom.add(Math.min(headroom.damage, p.enemyHp.sum()));
+                headroom.add(coeff.killEnemy * headroom.kills(p.enemyHp));
             }
 
             return result;
@@ -0,0 +1,48 @@
+// Runs two search engines on the same situation, returns the result of the first one and logs how the second one compares
+// to it so far: how often they decide differently, how much value the second one loses and how fast it is
+public class SearchComparison {
+    private static int compared;
+    private static int inconclusive;
+    private static int differ;
+    private static double lostValue;
+    private static long nodes;
+    private static long otherNodes;
+    private static long nanos;
+    private static long otherNanos;
+
+    private SearchComparison() {}
+
+    @NotNull
+    public static synchronized SearchResult run(@NotNull Situation situation, @NotNull Position start,
+                                                @NotNull SearchEngine engine, @NotNull SearchEngine other) {
+        long time = System.nanoTime();
+        SearchResult result = engine.search(situation, start);
+        long otherTime = System.nanoTime();
+        SearchResult otherResult = other.search(situation, start);
+        long end = System.nanoTime();
+
+        if (situation.deadline.isExpired()) {
+            // At least one of the searches was cut short, so there's nothing to compare
+            inconclusive++;
+            return result;
+        }
+
+        compared++;
+        nodes += result.nodes;
+        otherNodes += otherResult.nodes;
+        nanos += otherTime - time;
+        otherNanos += end - otherTime;
+        boolean same = result.path.equals(otherResult.path);
+        if (!same) {
+            differ++;
+            lostValue += situation.scorer.evaluate(result.position) - situation.scorer.evaluate(otherResult.position);
+        }
+
+        Debug.log(String.format("%s vs %s: %s (%d vs %d nodes, %.1f vs %.1f ms); so far differ in %d of %d searches " +
+                        "(%d inconclusive), average loss %.3f, %.1f%% of nodes, %.1f%% of time",
+                engine, other, same ? "same" : result.path + " vs " + otherResult.path, result.nodes, otherResult.nodes,
+                (otherTime - time) / 1e6, (end - otherTime) / 1e6, differ, compared, inconclusive,
+                differ == 0 ? 0. : lostValue / differ, 100. * otherNodes / nodes, 100. * otherNanos / nanos));
+        return result;
+    }
+}
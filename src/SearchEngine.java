@@ -0,0 +1,5 @@
+// Finds the best position the trooper of the situation can get to in this turn from the start
+public interface SearchEngine {
+    @NotNull
+    SearchResult search(@NotNull Situation situation, @NotNull Position start);
+}
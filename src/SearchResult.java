@@ -0,0 +1,20 @@
+import java.util.List;
+
+public class SearchResult {
+    public final Position position;
+    public final List<Go> path;
+    // Positions the search has generated, including equal ones if it doesn't deduplicate them across its parts
+    public final int nodes;
+
+    public SearchResult(@NotNull Position position, @NotNull List<Go> path, int nodes) {
+        this.position = position;
+        this.path = path;
+        this.nodes = nodes;
+    }
+
+    @NotNull
+    public static SearchResult of(@NotNull SearchTree tree, int best) {
+        assert best != -1 : "Where's best? " + tree.position(0);
+        return new SearchResult(tree.position(best), tree.pathTo(best), tree.size());
+    }
+}
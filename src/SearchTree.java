@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Positions explored by a search with back-pointers to their parents, deduplicated via an open-addressing table of packed keys.
+// Only the keys and what they leave out are stored, positions are unpacked on demand. Arrays are kept between searches: each
+// thread has one tree for the outer search and one for the nested ones (see arena())
+public class SearchTree {
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    public static final int NO_ACTION = -1;
+
+    private static final ThreadLocal<SearchTree[]> ARENAS = new ThreadLocal<SearchTree[]>() {
+        @Override
+        protected SearchTree[] initialValue() {
+            return new SearchTree[2];
+        }
+    };
+
+    private Situation situation;
+    private int keyLength;
+    private int size;
+
+    // Indexed by node: keyLength longs of Position.pack, Zobrist hash, action points, cells seen, index of the parent node and
+    // the code of the action from it (Go.code)
+    private long[] keys;
+    private long[] zobrists;
+    private int[] actionPoints;
+    private PointSet[] seen;
+    private int[] parents;
+    private int[] actions;
+
+    // Open-addressing hash table, contains node index + 1 or 0 for an empty slot
+    private int[] table;
+
+    private long[] buffer;
+
+    public SearchTree(@NotNull Situation situation) {
+        this.situation = situation;
+        this.keyLength = situation.keyLength;
+        this.keys = new long[INITIAL_CAPACITY * keyLength];
+        this.zobrists = new long[INITIAL_CAPACITY];
+        this.actionPoints = new int[INITIAL_CAPACITY];
+        this.seen = new PointSet[INITIAL_CAPACITY];
+        this.parents = new int[INITIAL_CAPACITY];
+        this.actions = new int[INITIAL_CAPACITY];
+        this.table = new int[2 * INITIAL_CAPACITY];
+        this.buffer = new long[keyLength];
+    }
+
+    // Empty tree for the situation, reusing the arrays of the previous search of the same kind in this thread.
+    // The tree is only valid until the next call with a situation of the same kind in this thread
+    @NotNull
+    public static SearchTree arena(@NotNull Situation situation) {
+        SearchTree[] arenas = ARENAS.get();
+        int kind = situation.lightVersion ? 1 : 0;
+        SearchTree tree = arenas[kind];
+        if (tree == null) {
+            tree = new SearchTree(situation);
+            arenas[kind] = tree;
+        } else {
+            tree.reset(situation);
+        }
+        return tree;
+    }
+
+    private void reset(@NotNull Situation situation) {
+        this.situation = situation;
+        if (keyLength != situation.keyLength) {
+            keyLength = situation.keyLength;
+            buffer = new long[keyLength];
+            if (keys.length < parents.length * keyLength) keys = new long[parents.length * keyLength];
+        }
+        // Cells seen aren't reused, but shouldn't be kept alive by the arena either
+        Arrays.fill(seen, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // A new position each time, equal to the one added as the node
+    @NotNull
+    public Position position(int node) {
+        return Position.unpack(situation, keys, node * keyLength, actionPoints[node], seen[node], zobrists[node]);
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    public int actionPoints(int node) {
+        return actionPoints[node];
+    }
+
+    // Go.code of the action which led to the node (or a walk, see Walks), or NO_ACTION for the root
+    public int action(int node) {
+        return actions[node];
+    }
+
+    public int addRoot(@NotNull Position start) {
+        assert size == 0 : "Root is already here: " + position(0);
+        return add(start, NO_ACTION, -1);
+    }
+
+    // Can be called from several threads at once as long as no one is adding anything. The buffer should be keyLength() long
+    public boolean contains(@NotNull Position position, @NotNull long[] buffer) {
+        position.pack(buffer, 0);
+        return table[find(buffer, position.zobrist)] != 0;
+    }
+
+    public int keyLength() {
+        return keyLength;
+    }
+
+    // Returns index of the new node or -1 if an equal position has already been explored
+    public int add(@NotNull Position position, int action, int parent) {
+        return add(position, action, parent, false);
+    }
+
+    // Same, but an equal position with fewer action points is superseded by the new one (which is then returned)
+    public int addIfMoreActionPoints(@NotNull Position position, int action, int parent) {
+        return add(position, action, parent, true);
+    }
+
+    private int add(@NotNull Position position, int action, int parent, boolean supersede) {
+        assert position.situation == situation : "Position of another situation: " + position;
+        position.pack(buffer, 0);
+        int slot = find(buffer, position.zobrist);
+        if (table[slot] != 0) {
+            if (!supersede || actionPoints[table[slot] - 1] >= position.actionPoints) return -1;
+        }
+
+        int node = size;
+        if (node == parents.length) {
+            grow();
+            return add(position, action, parent, supersede);
+        }
+
+        size++;
+        System.arraycopy(buffer, 0, keys, node * keyLength, keyLength);
+        zobrists[node] = position.zobrist;
+        actionPoints[node] = position.actionPoints;
+        seen[node] = position.seen;
+        parents[node] = parent;
+        actions[node] = action;
+        table[slot] = node + 1;
+        return node;
+    }
+
+    @NotNull
+    public List<Go> pathTo(int node) {
+        List<Go> result = new ArrayList<>(12);
+        for (int cur = node; parents[cur] != -1; cur = parents[cur]) {
+            int action = actions[cur];
+            if (Walks.isWalk(action)) {
+                Position from = position(parents[cur]);
+                result.addAll(Util.reverse(from.situation.walks.from(from).path(action & ~Walks.WALK)));
+            } else {
+                result.add(Go.byCode(action));
+            }
+        }
+        return Util.reverse(result);
+    }
+
+    // Returns the slot where the key is or where it should be
+    private int find(@NotNull long[] key, long zobrist) {
+        int mask = table.length - 1;
+        int slot = hash(zobrist) & mask;
+        while (table[slot] != 0) {
+            int node = table[slot] - 1;
+            if (zobrists[node] == zobrist && sameKey(node, key)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long zobrist) {
+        return (int) (zobrist ^ (zobrist >>> 32));
+    }
+
+    private boolean sameKey(int node, @NotNull long[] key) {
+        int offset = node * keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            if (keys[offset + i] != key[i]) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        int capacity = 2 * parents.length;
+        keys = Arrays.copyOf(keys, capacity * keyLength);
+        zobrists = Arrays.copyOf(zobrists, capacity);
+        actionPoints = Arrays.copyOf(actionPoints, capacity);
+        seen = Arrays.copyOf(seen, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        actions = Arrays.copyOf(actions, capacity);
+
+        table = new int[2 * capacity];
+        int mask = table.length - 1;
+        for (int node = 0; node < size; node++) {
+            int slot = hash(zobrists[node]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = node + 1;
+        }
+    }
+}
@@ -2,11 +2,15 @@ import model.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static model.TrooperType.*;
 
 public class Situation {
+    private static final TrooperStance[] STANCES = TrooperStance.values();
+
     public final Game game;
     // Should be used only for reachability check and moveIndex
     public final World world;
@@ -18,17 +22,43 @@ public class Situation {
     public final List<Bonus> bonuses;
 
     public final boolean lightVersion;
+    // Planned ahead of the real turn in background, see Speculation. It runs on its own thread and doesn't change the army
+    public final boolean speculative;
+    public final Effort effort;
     public final Scorer scorer;
+    // Shared by nested searches, since they're a part of evaluation of the outer one
+    public final Deadline deadline;
+
+    // Number of longs needed to pack a Position, see Position.pack
+    public final int keyLength;
+    // Null unless moves are explored as whole walks, see Const.walks
+    public final Walks walks;
+    // Passable cells not occupied by other allies, enemies are not excluded since they may be killed during the turn
+    public final PointSet free;
+    // Shared with the nested situations of the next ally's turn, which have the same enemies
+    public final Grenades grenades;
+    // Cells of enemies, dead or alive. Shared with the nested situations of the next ally's turn, which have the same enemies
+    public final PointSet occupied;
+    // Indexed by cell: index of the bonus there in bonuses or -1, null if there are no bonuses
+    private final int[] bonusAt;
+    // Indexed by the type and the stance of self, then by (cell, stance) of self, see shootable. Shared with the nested situations
+    // of the next ally's turn, which have the same enemies. Allocated on first use and filled lazily, racing threads compute the
+    // same values
+    private final AtomicReferenceArray<int[]> shootable;
+    // Indexed by stance, and the last one is for any stance, see reachable. Computed on first use, racing threads compute equal sets
+    private volatile PointSet[] reachable;
 
     public Situation(@NotNull Game game, @NotNull World world, @NotNull Army army, @NotNull TrooperType selfType, @NotNull List<Trooper> allies,
-                     @NotNull List<Trooper> enemies, @NotNull List<Bonus> bonuses) {
+                     @NotNull List<Trooper> enemies, @NotNull List<Bonus> bonuses, @NotNull Deadline deadline,
+                     boolean speculative) {
         this.game = game;
         this.world = world;
         this.army = army;
         this.board = army.board;
         this.allies = new ArrayList<>(allies.size());
         this.enemies = new ArrayList<>(enemies.size());
-        this.bonuses = bonuses;
+        this.bonuses = bonuses.size() > Position.MAX_BONUSES ? bonuses.subList(0, Position.MAX_BONUSES) : bonuses;
+        this.deadline = deadline;
 
         for (int i = 0, n = allies.size(); i < n; i++) {
             this.allies.add(new Warrior(i, allies.get(i)));
@@ -41,10 +71,19 @@ public class Situation {
         }
 
         this.lightVersion = false;
+        this.speculative = speculative;
+        this.effort = army.coeff.adaptiveEffort ? Effort.adaptive(deadline, army.coeff.fullEffortMillis) : Effort.full(deadline);
         this.scorer = createScorer();
+        this.keyLength = Position.keyLength(this);
+        this.walks = army.coeff.walks ? new Walks(this) : null;
+        this.free = computeFree();
+        this.grenades = new Grenades(this);
+        this.occupied = computeOccupied();
+        this.bonusAt = computeBonusAt();
+        this.shootable = newShootable();
     }
 
-    public Situation(@NotNull Situation situation, @NotNull TrooperType selfType, @NotNull List<Warrior> allies) {
+    public Situation(@NotNull Situation situation, @NotNull TrooperType selfType, @NotNull List<Warrior> allies, @NotNull Deadline deadline) {
         this.game = situation.game;
         this.world = situation.world;
         this.army = situation.army;
@@ -53,8 +92,71 @@ public class Situation {
         this.allies = allies;
         this.enemies = situation.enemies;
         this.bonuses = situation.bonuses;
+        this.deadline = deadline;
         this.lightVersion = true;
+        this.speculative = situation.speculative;
+        this.effort = Effort.LIGHT;
         this.scorer = createScorer();
+        this.keyLength = Position.keyLength(this);
+        this.walks = army.coeff.walks ? new Walks(this) : null;
+        this.free = computeFree();
+        this.grenades = situation.grenades;
+        this.occupied = situation.occupied;
+        this.bonusAt = situation.bonusAt;
+        this.shootable = situation.shootable;
+    }
+
+    // Turn of the enemy against our troopers as they are in the position, to find out how much damage he's able to deal.
+    // The enemy is alone here, since it's unknown what his teammates are going to do
+    public Situation(@NotNull Situation situation, @NotNull EnemyWarrior enemy, @NotNull Position p, @NotNull Deadline deadline) {
+        this.game = situation.game;
+        this.world = situation.world;
+        this.army = situation.army;
+        this.board = situation.board;
+        this.self = new Warrior(0, enemy.trooper);
+        this.allies = Collections.singletonList(self);
+        this.enemies = new ArrayList<>(p.allies().size());
+        for (Warrior ally : p.allies()) {
+            this.enemies.add(new EnemyWarrior(ally));
+        }
+        this.bonuses = Collections.emptyList();
+        this.deadline = deadline;
+        this.lightVersion = true;
+        this.speculative = situation.speculative;
+        this.effort = Effort.LIGHT;
+        this.scorer = new Scorer.EnemyResponse(this, p.allyHp);
+        this.keyLength = Position.keyLength(this);
+        this.walks = army.coeff.walks ? new Walks(this) : null;
+        this.free = computeFree();
+        this.grenades = new Grenades(this);
+        this.occupied = computeOccupied();
+        this.bonusAt = null;
+        this.shootable = newShootable();
+    }
+
+    // Fight as it may be a few turns later, see Endgame. Only the troopers in it are alive, they may be anyone's
+    public Situation(@NotNull Situation situation, @NotNull Warrior self, @NotNull List<Warrior> allies, @NotNull List<EnemyWarrior> enemies,
+                     @NotNull Deadline deadline) {
+        this.game = situation.game;
+        this.world = situation.world;
+        this.army = situation.army;
+        this.board = situation.board;
+        this.self = self;
+        this.allies = allies;
+        this.enemies = enemies;
+        this.bonuses = Collections.emptyList();
+        this.deadline = deadline;
+        this.lightVersion = true;
+        this.speculative = situation.speculative;
+        this.effort = Effort.LIGHT;
+        this.scorer = createScorer();
+        this.keyLength = Position.keyLength(this);
+        this.walks = army.coeff.walks ? new Walks(this) : null;
+        this.free = computeFree();
+        this.grenades = new Grenades(this);
+        this.occupied = computeOccupied();
+        this.bonusAt = null;
+        this.shootable = newShootable();
     }
 
     @NotNull
@@ -65,6 +167,136 @@ public class Situation {
         throw new IllegalStateException("Where am I? " + allies);
     }
 
+    @NotNull
+    private PointSet computeFree() {
+        PointSet result = board.passableSet();
+        for (Warrior ally : allies) {
+            if (ally != self) result.remove(ally.point);
+        }
+        return result;
+    }
+
+    @NotNull
+    private PointSet computeOccupied() {
+        PointSet result = new PointSet();
+        for (EnemyWarrior enemy : enemies) {
+            result.add(enemy.point);
+        }
+        return result;
+    }
+
+    @Nullable
+    private int[] computeBonusAt() {
+        if (bonuses.isEmpty()) return null;
+        int[] result = new int[Board.WIDTH * Board.HEIGHT];
+        Arrays.fill(result, -1);
+        for (int i = 0, n = bonuses.size(); i < n; i++) {
+            result[Point.create(bonuses.get(i)).index()] = i;
+        }
+        return result;
+    }
+
+    @NotNull
+    private static AtomicReferenceArray<int[]> newShootable() {
+        return new AtomicReferenceArray<>(TrooperType.values().length * STANCES.length);
+    }
+
+    // Bit set of indices of enemies self could shoot from the cell in the stance, whether they're alive or not
+    public int shootable(@NotNull Point point, @NotNull TrooperStance stance) {
+        int slot = self.type.ordinal() * STANCES.length + self.stance.ordinal();
+        int[] shootable = this.shootable.get(slot);
+        if (shootable == null) {
+            this.shootable.compareAndSet(slot, null, new int[Board.WIDTH * Board.HEIGHT * STANCES.length]);
+            shootable = this.shootable.get(slot);
+        }
+        int index = point.index() * STANCES.length + stance.ordinal();
+        int result = shootable[index];
+        if (result == 0) {
+            // The lowest bit tells that it's computed
+            result = 1;
+            double range = shootingRange(stance);
+            for (EnemyWarrior enemy : enemies) {
+                if (isReachable(range, point, stance, enemy.point, enemy.stance)) result |= 2 << enemy.index;
+            }
+            shootable[index] = result;
+        }
+        return result >>> 1;
+    }
+
+    // Cells self may be in, in the stance, at some moment of the turn. Enemies are not excluded since they may be killed on the
+    // way, and all field rations count as eaten, so the search never gets anywhere else
+    @NotNull
+    public PointSet reachable(@NotNull TrooperStance stance) {
+        return reachable()[stance.ordinal()];
+    }
+
+    @NotNull
+    public PointSet reachableInAnyStance() {
+        return reachable()[STANCES.length];
+    }
+
+    @NotNull
+    private PointSet[] reachable() {
+        PointSet[] result = reachable;
+        if (result == null) {
+            reachable = result = computeReachable();
+        }
+        return result;
+    }
+
+    @NotNull
+    private PointSet[] computeReachable() {
+        int rationBonus = Math.max(game.getFieldRationBonusActionPoints() - game.getFieldRationEatCost(), 0);
+        int rations = self.trooper.isHoldingFieldRation() ? 1 : 0;
+        for (Bonus bonus : bonuses) {
+            if (bonus.getType() == BonusType.FIELD_RATION) rations++;
+        }
+        // Nested situations start with the initial action points of self, which may be in the commander's aura
+        int actionPoints = Math.max(self.trooper.getActionPoints(),
+                self.getInitialActionPoints() + game.getCommanderAuraBonusActionPoints()) + rations * rationBonus;
+
+        PointSet start = new PointSet();
+        start.add(self.point);
+        PointSet[] result = new PointSet[STANCES.length + 1];
+        PointSet any = new PointSet();
+        for (TrooperStance stance : STANCES) {
+            // Moving all the way in one stance, changing to it first and to the given stance in the end, is the farthest one gets
+            int steps = -1;
+            for (TrooperStance moving : STANCES) {
+                int changes = Math.abs(moving.ordinal() - self.stance.ordinal()) + Math.abs(stance.ordinal() - moving.ordinal());
+                int left = actionPoints - changes * game.getStanceChangeCost();
+                if (left >= 0) steps = Math.max(steps, left / getMoveCost(moving));
+            }
+            result[stance.ordinal()] = steps < 0 ? new PointSet() : start.flood(free, steps);
+            any.addAll(result[stance.ordinal()]);
+        }
+        result[STANCES.length] = any;
+        return result;
+    }
+
+    private double shootingRange(@NotNull TrooperStance stance) {
+        double result = self.getShootingRange();
+        if (self.type == SNIPER) {
+            result -= sniperShootingRangeBonus(self.stance);
+            result += sniperShootingRangeBonus(stance);
+        }
+        return result;
+    }
+
+    private double sniperShootingRangeBonus(@NotNull TrooperStance stance) {
+        switch (stance) {
+            case STANDING: return game.getSniperStandingShootingRangeBonus();
+            case KNEELING: return game.getSniperKneelingShootingRangeBonus();
+            case PRONE: return game.getSniperProneShootingRangeBonus();
+            default: throw new IllegalStateException("Sniper is so stealth, he's " + stance);
+        }
+    }
+
+    // Index of the bonus at the point in bonuses or -1, whether it's collected or not
+    public int bonusAt(@NotNull Point point) {
+        return bonusAt != null ? bonusAt[point.index()] : -1;
+    }
+
     @NotNull
     private Scorer createScorer() {
         if (!enemies.isEmpty()) {
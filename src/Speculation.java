@@ -0,0 +1,171 @@
+import model.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Plan of the next trooper in the order, computed in background from the world as it's expected to be after the current
+// trooper's plan is done. It's used only if the world is exactly like that when the next trooper's turn comes.
+// It runs on its own low priority thread and never on ParallelFrontier.POOL, so the real search always comes first
+public class Speculation {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "speculation");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    private final TrooperType type;
+    private final World expected;
+    private final Deadline deadline;
+    private final Future<Plan> plan;
+
+    private Speculation(@NotNull TrooperType type, @NotNull World expected, @NotNull Deadline deadline, @NotNull Future<Plan> plan) {
+        this.type = type;
+        this.expected = expected;
+        this.deadline = deadline;
+        this.plan = plan;
+    }
+
+    // Starts planning the turn of the given trooper in the world where the current one has done its plan
+    @NotNull
+    public static Speculation start(@NotNull final Army army, @NotNull final World world, @NotNull final Game game,
+                                    @NotNull Trooper self, @NotNull Position end, @NotNull List<Trooper> allies,
+                                    @NotNull List<Trooper> enemies, @NotNull TrooperType next, long budgetMillis) {
+        final World expected = expectedWorld(world, game, self, end, allies, enemies, next);
+        final Trooper nextTrooper = find(expected, next);
+        // The deadline starts when the speculation does, and it's far from the real move() call anyway
+        final Deadline deadline = Deadline.after(budgetMillis);
+        Future<Plan> plan = EXECUTOR.submit(new Callable<Plan>() {
+            @Override
+            public Plan call() {
+                return MakeTurn.speculate(army, nextTrooper, expected, game, deadline);
+            }
+        });
+        return new Speculation(next, expected, deadline, plan);
+    }
+
+    // The search gives up at once if it's running, with the best it has found so far, nobody waits for it though
+    public void cancel() {
+        deadline.cancel();
+        plan.cancel(true);
+    }
+
+    // The plan if it's made for this trooper in exactly this world or null if the speculation has failed
+    @Nullable
+    public Plan take(@NotNull Trooper self, @NotNull World world) {
+        if (self.getType() != type || !sameTroopers(world, expected, type) || !sameBonuses(world, expected)) {
+            cancel();
+            return null;
+        }
+        try {
+            return plan.get();
+        } catch (InterruptedException | ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    private static World expectedWorld(@NotNull World world, @NotNull Game game, @NotNull Trooper self, @NotNull Position end,
+                                       @NotNull List<Trooper> allies, @NotNull List<Trooper> enemies, @NotNull TrooperType next) {
+        List<Trooper> troopers = new ArrayList<>();
+        Trooper commander = null;
+        for (int i = 0; i < allies.size(); i++) {
+            Trooper ally = allies.get(i);
+            if (ally.getType() == self.getType()) {
+                ally = copy(ally, end.me.x, end.me.y, end.stance, end.allyHp.get(i), end.actionPoints,
+                        end.has(BonusType.GRENADE), end.has(BonusType.MEDIKIT), end.has(BonusType.FIELD_RATION));
+            } else {
+                ally = copy(ally, ally.getX(), ally.getY(), ally.getStance(), end.allyHp.get(i), ally.getActionPoints(),
+                        ally.isHoldingGrenade(), ally.isHoldingMedikit(), ally.isHoldingFieldRation());
+            }
+            if (ally.getHitpoints() <= 0) continue;
+            if (ally.getType() == TrooperType.COMMANDER) commander = ally;
+            troopers.add(ally);
+        }
+        for (int i = 0; i < troopers.size(); i++) {
+            Trooper ally = troopers.get(i);
+            if (ally.getType() != next) continue;
+            int actionPoints = ally.getInitialActionPoints();
+            if (commander != null && ally != commander &&
+                    ally.getDistanceTo(commander) <= game.getCommanderAuraRange()) {
+                actionPoints += game.getCommanderAuraBonusActionPoints();
+            }
+            troopers.set(i, copy(ally, ally.getX(), ally.getY(), ally.getStance(), ally.getHitpoints(), actionPoints,
+                    ally.isHoldingGrenade(), ally.isHoldingMedikit(), ally.isHoldingFieldRation()));
+        }
+        for (int i = 0; i < enemies.size(); i++) {
+            Trooper enemy = enemies.get(i);
+            if (end.enemyHp.get(i) <= 0) continue;
+            troopers.add(copy(enemy, enemy.getX(), enemy.getY(), enemy.getStance(), end.enemyHp.get(i), enemy.getActionPoints(),
+                    enemy.isHoldingGrenade(), enemy.isHoldingMedikit(), enemy.isHoldingFieldRation()));
+        }
+
+        List<Bonus> bonuses = new ArrayList<>();
+        Bonus[] all = world.getBonuses();
+        for (int i = 0; i < all.length; i++) {
+            if (!end.isCollected(i)) bonuses.add(all[i]);
+        }
+
+        return new World(world.getMoveIndex(), world.getWidth(), world.getHeight(), world.getPlayers(),
+                troopers.toArray(new Trooper[troopers.size()]), bonuses.toArray(new Bonus[bonuses.size()]),
+                world.getCells(), world.getCellVisibilities());
+    }
+
+    @NotNull
+    private static Trooper copy(@NotNull Trooper t, int x, int y, @NotNull TrooperStance stance, int hitpoints, int actionPoints,
+                                boolean holdingGrenade, boolean holdingMedikit, boolean holdingFieldRation) {
+        return new Trooper(t.getId(), x, y, t.getPlayerId(), t.getTeammateIndex(), t.isTeammate(), t.getType(), stance,
+                hitpoints, t.getMaximalHitpoints(), actionPoints, t.getInitialActionPoints(), t.getVisionRange(),
+                t.getShootingRange(), t.getShootCost(), t.getStandingDamage(), t.getKneelingDamage(), t.getProneDamage(),
+                t.getDamage(), holdingGrenade, holdingMedikit, holdingFieldRation);
+    }
+
+    @NotNull
+    private static Trooper find(@NotNull World world, @NotNull TrooperType type) {
+        for (Trooper trooper : world.getTroopers()) {
+            if (trooper.isTeammate() && trooper.getType() == type) return trooper;
+        }
+        throw new IllegalStateException("Who's next? " + type);
+    }
+
+    // Action points are only known for the trooper whose turn it is
+    private static boolean sameTroopers(@NotNull World world, @NotNull World expected, @NotNull TrooperType self) {
+        Trooper[] troopers = world.getTroopers();
+        Trooper[] expectedTroopers = expected.getTroopers();
+        if (troopers.length != expectedTroopers.length) return false;
+        outer: for (Trooper trooper : troopers) {
+            for (Trooper other : expectedTroopers) {
+                if (trooper.getId() != other.getId()) continue;
+                if (trooper.getX() != other.getX() || trooper.getY() != other.getY() ||
+                        trooper.getStance() != other.getStance() ||
+                        trooper.getHitpoints() != other.getHitpoints() ||
+                        trooper.isHoldingGrenade() != other.isHoldingGrenade() ||
+                        trooper.isHoldingMedikit() != other.isHoldingMedikit() ||
+                        trooper.isHoldingFieldRation() != other.isHoldingFieldRation()) return false;
+                if (trooper.isTeammate() && trooper.getType() == self && trooper.getActionPoints() != other.getActionPoints()) {
+                    return false;
+                }
+                continue outer;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean sameBonuses(@NotNull World world, @NotNull World expected) {
+        Bonus[] bonuses = world.getBonuses();
+        Bonus[] expectedBonuses = expected.getBonuses();
+        if (bonuses.length != expectedBonuses.length) return false;
+        outer: for (Bonus bonus : bonuses) {
+            for (Bonus other : expectedBonuses) {
+                if (bonus.getId() == other.getId()) continue outer;
+            }
+            return false;
+        }
+        return true;
+    }
+}
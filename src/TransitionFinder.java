@@ -1,82 +1,113 @@
 import model.Direction;
 
-import java.util.Map;
-import java.util.Queue;
-
+import static model.BonusType.GRENADE;
 import static model.TrooperType.FIELD_MEDIC;
 
-public class TransitionFinder {
-    private final Situation situation;
-    private final Position cur;
-    private final Queue<Position> queue;
-    private final Map<Position, Pair<Go, Position>> prev;
+public abstract class TransitionFinder {
+    protected final Situation situation;
+    protected final Position cur;
+    // Code of the action which led to cur or SearchTree.NO_ACTION: actions commuting with it are only tried in one order
+    protected final int last;
 
-    public TransitionFinder(@NotNull Situation situation, @NotNull Position cur, @NotNull Queue<Position> queue,
-                            @NotNull Map<Position, Pair<Go, Position>> prev) {
+    public TransitionFinder(@NotNull Situation situation, @NotNull Position cur, int last) {
         this.situation = situation;
         this.cur = cur;
-        this.queue = queue;
-        this.prev = prev;
+        this.last = last;
     }
 
-    private void add(@NotNull Position next, @NotNull Go edge) {
-        if (!prev.containsKey(next)) {
-            prev.put(next, new Pair<>(edge, cur));
-            queue.add(next);
-        }
+    // Action is Go.code() or a walk, see Walks
+    protected abstract void add(@NotNull Position next, int action);
+
+    public static void expand(@NotNull Situation situation, @NotNull final SearchTree tree, final int node) {
+        new TransitionFinder(situation, tree.position(node), tree.action(node)) {
+            @Override
+            protected void add(@NotNull Position next, int action) {
+                tree.add(next, action, node);
+            }
+        }.run();
     }
 
     public void run() {
         // Field ration
         {
             Position next = cur.eatFieldRation();
-            if (next != null) add(next, Go.eatFieldRation());
+            if (next != null) add(next, Go.eatFieldRation().code());
         }
 
         // Heal
         if (situation.self.type == FIELD_MEDIC) {
-            for (Warrior ally : cur.allies) {
+            for (Warrior ally : cur.allies()) {
+                Go edge = Go.heal(cur.me.direction(ally.point));
+                if (!edge.canFollow(last)) continue;
                 Position next = cur.heal(ally);
-                if (next != null) add(next, Go.heal(cur.me.direction(ally.point)));
+                if (next != null) add(next, edge.code());
             }
         }
 
         // Shoot
-        for (EnemyWarrior enemy : situation.enemies) {
+        for (int shootable = situation.shootable(cur.me, cur.stance); shootable != 0; shootable &= shootable - 1) {
+            EnemyWarrior enemy = situation.enemies.get(Integer.numberOfTrailingZeros(shootable));
+            Go edge = Go.shoot(enemy.point);
+            if (!edge.canFollow(last)) continue;
             Position next = cur.shoot(enemy);
-            if (next != null) add(next, Go.shoot(enemy.point));
+            if (next != null) add(next, edge.code());
         }
 
         // Throw grenade
-        for (Warrior enemy : situation.enemies) {
-            for (Direction direction : Direction.values()) {
-                Point target = enemy.point.go(direction);
-                if (target != null) {
-                    Position next = cur.throwGrenade(target);
-                    if (next != null) add(next, Go.throwGrenade(target));
-                }
+        if (cur.has(GRENADE) && cur.actionPoints >= situation.game.getGrenadeThrowCost()) {
+            int alive = cur.enemyHp.alive();
+            Grenades grenades = situation.grenades;
+            for (int i : grenades.from(cur.me)) {
+                if (!grenades.hitsAlive(i, alive)) continue;
+                Point target = grenades.target(i);
+                Position next = cur.throwGrenade(target);
+                if (next != null) add(next, Go.throwGrenade(target).code());
             }
         }
 
         // Use medikit
-        for (Warrior ally : cur.allies) {
+        for (Warrior ally : cur.allies()) {
             Position next = cur.useMedikit(ally);
-            if (next != null) add(next, Go.useMedikit(cur.me.direction(ally.point)));
+            if (next != null) add(next, Go.useMedikit(cur.me.direction(ally.point)).code());
+        }
+
+        if (situation.army.coeff.walks) {
+            walk();
+            return;
         }
 
         // Change stance
         {
             Position higher = cur.raiseStance();
-            if (higher != null) add(higher, Go.raiseStance());
+            if (higher != null) add(higher, Go.raiseStance().code());
 
             Position lower = cur.lowerStance();
-            if (lower != null) add(lower, Go.lowerStance());
+            if (lower != null) add(lower, Go.lowerStance().code());
         }
 
-        // Move
+        // Move, only to cells self may get to in this stance at all, which also leaves out walls and other allies
+        PointSet reachable = situation.reachable(cur.stance);
         for (Direction direction : Util.DIRECTIONS) {
+            Point target = cur.me.go(direction);
+            if (target == null || !reachable.contains(target)) continue;
             Position next = cur.move(direction);
-            if (next != null) add(next, Go.move(direction));
+            if (next != null) add(next, Go.move(direction).code());
+        }
+    }
+
+    private void walk() {
+        // Walk right after a walk is almost always just a longer walk
+        if (Walks.isWalk(last)) return;
+
+        Walks.Walk walk = situation.walks.from(cur);
+        // Each walk is the walk to the previous state on the way plus one more step
+        Position[] reached = new Position[walk.size()];
+        for (int i = 0, n = walk.size(); i < n && walk.cost(i) <= cur.actionPoints; i++) {
+            int predecessor = walk.predecessor(i);
+            Position next = walk.lastStep(i).applyTo(predecessor == -1 ? cur : reached[predecessor]);
+            assert next != null : "Can't walk to " + walk.destination(i) + " from " + cur;
+            reached[i] = next;
+            add(next, Walks.WALK | walk.destination(i));
         }
     }
 }
@@ -6,6 +6,7 @@ import java.util.List;
 public class TurnLocalData {
     // TODO: also store bonuses seen in the beginning of the turn?
     private final List<Trooper> enemies = new ArrayList<>(15);
+    private Plan plan;
 
     @NotNull
     public List<Trooper> updateEnemies(@NotNull List<Trooper> moreEnemies) {
@@ -22,4 +23,13 @@ public class TurnLocalData {
         }
         return enemies;
     }
+
+    @Nullable
+    public Plan getPlan() {
+        return plan;
+    }
+
+    public void setPlan(@Nullable Plan plan) {
+        this.plan = plan;
+    }
 }
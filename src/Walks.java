@@ -0,0 +1,166 @@
+import model.Direction;
+import model.TrooperStance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Cheapest walks (moves and stance changes) of the trooper of the situation from a cell in a stance to every other cell and
+// stance, computed by Dijkstra once per start and set of alive enemies, since dead ones don't block the way anymore.
+// A walk is a single transition of the search, its action code is WALK | index of the destination state
+public class Walks {
+    public static final int WALK = 1 << 30;
+
+    private static final TrooperStance[] STANCES = TrooperStance.values();
+
+    private final Situation situation;
+    private final ConcurrentMap<Long, Walk> cache = new ConcurrentHashMap<>();
+
+    public Walks(@NotNull Situation situation) {
+        this.situation = situation;
+    }
+
+    public static boolean isWalk(int action) {
+        return action != SearchTree.NO_ACTION && (action & WALK) != 0;
+    }
+
+    private static int state(@NotNull Point point, @NotNull TrooperStance stance) {
+        return point.index() * STANCES.length + stance.ordinal();
+    }
+
+    @NotNull
+    public Walk from(@NotNull Position p) {
+        long alive = p.enemyHp.alive();
+        Long key = alive << 32 | state(p.me, p.stance);
+        Walk walk = cache.get(key);
+        if (walk == null) {
+            walk = new Walk(p);
+            Walk previous = cache.putIfAbsent(key, walk);
+            if (previous != null) walk = previous;
+        }
+        return walk;
+    }
+
+    public class Walk {
+        private final int start;
+        // Indexed by state: action points needed to get there and the previous state on the way
+        private final int[] cost;
+        private final int[] previous;
+        // States in the order of increasing cost, the start is not included, and indices of their previous states in it
+        private final int[] order;
+        private final int[] predecessor;
+
+        private Walk(@NotNull final Position p) {
+            int states = Board.WIDTH * Board.HEIGHT * STANCES.length;
+            start = state(p.me, p.stance);
+            cost = new int[states];
+            previous = new int[states];
+            Arrays.fill(cost, Integer.MAX_VALUE);
+            Arrays.fill(previous, -1);
+
+            boolean[] blocked = new boolean[Board.WIDTH * Board.HEIGHT];
+            for (Warrior ally : situation.allies) {
+                if (ally != situation.self) blocked[ally.point.index()] = true;
+            }
+            for (EnemyWarrior enemy : situation.enemies) {
+                if (p.enemyHp.get(enemy.index) > 0) blocked[enemy.point.index()] = true;
+            }
+
+            IntList settled = new IntList(64);
+            PriorityQueue<Integer> queue = new PriorityQueue<>(64, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    int result = Integer.compare(cost[o1], cost[o2]);
+                    return result != 0 ? result : o1 - o2;
+                }
+            });
+            cost[start] = 0;
+            queue.add(start);
+            int stanceChangeCost = situation.game.getStanceChangeCost();
+            // Field ration can't give more than initial action points, so only the commander aura may exceed them
+            int maxCost = situation.self.getInitialActionPoints() + situation.game.getCommanderAuraBonusActionPoints();
+            while (!queue.isEmpty()) {
+                int cur = queue.poll();
+                if (cur != start) settled.add(cur);
+                Point point = Point.byIndex(cur / STANCES.length);
+                TrooperStance stance = STANCES[cur % STANCES.length];
+
+                TrooperStance higher = Util.higher(stance);
+                if (higher != null) relax(queue, cur, state(point, higher), cost[cur] + stanceChangeCost, maxCost);
+                TrooperStance lower = Util.lower(stance);
+                if (lower != null) relax(queue, cur, state(point, lower), cost[cur] + stanceChangeCost, maxCost);
+
+                int moveCost = cost[cur] + situation.getMoveCost(stance);
+                for (Direction direction : Util.DIRECTIONS) {
+                    Point next = point.go(direction);
+                    if (next != null && situation.board.isPassable(next) && !blocked[next.index()]) {
+                        relax(queue, cur, state(next, stance), moveCost, maxCost);
+                    }
+                }
+            }
+            order = settled.toArray();
+            int[] indexOf = new int[states];
+            predecessor = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                indexOf[order[i]] = i;
+                int prev = previous[order[i]];
+                predecessor[i] = prev == start ? -1 : indexOf[prev];
+            }
+        }
+
+        private void relax(@NotNull PriorityQueue<Integer> queue, int from, int to, int newCost, int maxCost) {
+            if (newCost > maxCost || newCost >= cost[to]) return;
+            queue.remove(to);
+            cost[to] = newCost;
+            previous[to] = from;
+            queue.add(to);
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        // Destination states in the order of increasing cost
+        public int destination(int i) {
+            return order[i];
+        }
+
+        public int cost(int i) {
+            return cost[order[i]];
+        }
+
+        // Index of the previous destination on the way to the i-th one or -1 if it's the start
+        public int predecessor(int i) {
+            return predecessor[i];
+        }
+
+        // The last action on the way to the i-th destination
+        @NotNull
+        public Go lastStep(int i) {
+            return step(previous[order[i]], order[i]);
+        }
+
+        @NotNull
+        public List<Go> path(int destination) {
+            List<Go> result = new ArrayList<>();
+            for (int cur = destination; cur != start; cur = previous[cur]) {
+                result.add(step(previous[cur], cur));
+            }
+            return Util.reverse(result);
+        }
+
+        @NotNull
+        private Go step(int from, int to) {
+            Point fromPoint = Point.byIndex(from / STANCES.length);
+            Point toPoint = Point.byIndex(to / STANCES.length);
+            if (fromPoint.equals(toPoint)) {
+                return to % STANCES.length > from % STANCES.length ? Go.raiseStance() : Go.lowerStance();
+            }
+            return Go.move(fromPoint.direction(toPoint));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import model.Game;
+import model.Trooper;
+import model.TrooperStance;
+import model.World;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Fills the caches of the board while the other players think, so that the next move() spends its time on the search itself:
+// what each of our troopers sees and distances from every cell it may walk to this or the next turn, and from the way points.
+// One per army, they all share one background thread
+public class WarmUp {
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NotNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final Army army;
+    private Future<?> running;
+
+    public WarmUp(@NotNull Army army) {
+        this.army = army;
+    }
+
+    public void start(@NotNull final World world, @NotNull final Game game) {
+        stop();
+        running = EXECUTOR.submit(new Runnable() {
+            @Override
+            public void run() {
+                warmUp(world, game);
+            }
+        });
+    }
+
+    // Whatever is computed by now stays in the caches, the rest will be computed by the search when needed
+    public void stop() {
+        if (running != null) {
+            running.cancel(true);
+            running = null;
+        }
+    }
+
+    private void warmUp(@NotNull World world, @NotNull Game game) {
+        Board board = army.board;
+        for (Trooper trooper : world.getTroopers()) {
+            if (!trooper.isTeammate()) continue;
+            Point start = Point.create(trooper);
+            int maxDistance = (trooper.getInitialActionPoints() + game.getCommanderAuraBonusActionPoints()) /
+                    game.getStandingMoveCost();
+            for (Point point : board.allPassable()) {
+                if (Thread.currentThread().isInterrupted()) return;
+                Integer distance = board.distance(start, point);
+                if (distance == null || distance > maxDistance) continue;
+                for (TrooperStance stance : TrooperStance.values()) {
+                    board.visibleFrom(trooper.getType(), trooper.getVisionRange(), point, stance);
+                }
+                board.distance(point, start);
+            }
+        }
+
+        // The leader's scorer looks up distances from the way point, see Scorer.Leader
+        for (Point wayPoint : army.getWayPoints()) {
+            if (Thread.currentThread().isInterrupted()) return;
+            board.distance(wayPoint, wayPoint);
+        }
+    }
+}
@@ -10,7 +10,7 @@ public class Warrior {
 
     protected final Trooper trooper;
 
-    private Warrior(int index, @NotNull Trooper trooper, @NotNull Point point, @NotNull TrooperStance stance) {
+    protected Warrior(int index, @NotNull Trooper trooper, @NotNull Point point, @NotNull TrooperStance stance) {
         this.index = index;
         this.trooper = trooper;
         this.point = point;
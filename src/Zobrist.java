@@ -0,0 +1,101 @@
+import model.TrooperStance;
+
+import java.util.Random;
+
+// Random keys of everything Position.equals() looks at. Hash of a position is xor of the keys of its features, so each
+// transition updates it by xor-ing out the old features and xor-ing in the new ones
+public class Zobrist {
+    private static final int MAX_TROOPERS = 32;
+    private static final int MAX_BONUSES = 256;
+    private static final int HP_VALUES = 1 << Position.HP_BITS;
+
+    private static final long[] CELL;
+    private static final long[] STANCE;
+    private static final long[] BONUS;
+    private static final long[] COLLECTED;
+    // Indexed by trooper index * HP_VALUES + hitpoints
+    private static final long[] ENEMY_HP;
+    private static final long[] ALLY_HP;
+
+    static {
+        // Fixed seed, so that the search explores the same positions in the same order every run
+        Random random = new Random(20131108L);
+        CELL = randomKeys(random, 1 << Position.CELL_BITS);
+        STANCE = randomKeys(random, TrooperStance.values().length);
+        BONUS = randomKeys(random, Position.BONUS_BITS);
+        COLLECTED = randomKeys(random, MAX_BONUSES);
+        ENEMY_HP = randomKeys(random, MAX_TROOPERS * HP_VALUES);
+        ALLY_HP = randomKeys(random, MAX_TROOPERS * HP_VALUES);
+    }
+
+    private Zobrist() {}
+
+    @NotNull
+    private static long[] randomKeys(@NotNull Random random, int n) {
+        long[] result = new long[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = random.nextLong();
+        }
+        return result;
+    }
+
+    public static long of(@NotNull Position p) {
+        long result = cell(p.me) ^ stance(p.stance) ^ bonuses(p.bonuses);
+        for (long bits = p.collected; bits != 0; bits &= bits - 1) {
+            result ^= collected(Long.numberOfTrailingZeros(bits));
+        }
+        result ^= enemyHp(Hitpoints.of(new int[p.enemyHp.size()]), p.enemyHp) ^ allyHp(Hitpoints.of(new int[p.allyHp.size()]), p.allyHp);
+        return result;
+    }
+
+    public static long cell(@NotNull Point point) {
+        return CELL[point.index()];
+    }
+
+    public static long stance(@NotNull TrooperStance stance) {
+        return STANCE[stance.ordinal()];
+    }
+
+    // Xor of the keys of all bits set, pass xor of the old and the new bit sets to get the difference
+    public static long bonuses(int bits) {
+        long result = 0;
+        for (int i = 0; bits != 0; i++, bits >>>= 1) {
+            if ((bits & 1) != 0) result ^= BONUS[i];
+        }
+        return result;
+    }
+
+    public static long collected(int bonusIndex) {
+        assert bonusIndex < MAX_BONUSES : "Too many bonuses: " + bonusIndex;
+        return COLLECTED[bonusIndex];
+    }
+
+    public static long enemyHp(int index, int hp) {
+        return ENEMY_HP[index * HP_VALUES + hp];
+    }
+
+    public static long allyHp(int index, int hp) {
+        return ALLY_HP[index * HP_VALUES + hp];
+    }
+
+    // Difference between hashes of two hitpoint arrays, zero hitpoints don't contribute to the hash
+    public static long enemyHp(@NotNull Hitpoints was, @NotNull Hitpoints now) {
+        return hitpoints(ENEMY_HP, was, now);
+    }
+
+    public static long allyHp(@NotNull Hitpoints was, @NotNull Hitpoints now) {
+        return hitpoints(ALLY_HP, was, now);
+    }
+
+    private static long hitpoints(@NotNull long[] keys, @NotNull Hitpoints was, @NotNull Hitpoints now) {
+        if (was == now) return 0;
+        assert was.size() == now.size() && now.size() <= MAX_TROOPERS : "Hitpoints of different troopers";
+        long result = 0;
+        for (int i = 0, n = now.size(); i < n; i++) {
+            int before = was.get(i);
+            int after = now.get(i);
+            if (before != after) result ^= keys[i * HP_VALUES + before] ^ keys[i * HP_VALUES + after];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,73 @@
+import model.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A fight of our five troopers against six enemies in sight, where evaluating the start of the turn alone with everything
+// turned on takes longer than a move may. No one should end his turn without doing anything then
+public class MakeTurnDeadlineTest {
+    private static final int WIDTH = 30;
+    private static final int HEIGHT = 20;
+    private static final TrooperType[] ORDER = {TrooperType.COMMANDER, TrooperType.FIELD_MEDIC, TrooperType.SOLDIER,
+            TrooperType.SNIPER, TrooperType.SCOUT};
+
+    public static void main(String[] args) {
+        Game game = new Game(50, 0, 0, 0, 0, 2, 2, 4, 6, 2, 5.0, 10, 5, 1, 5, 3, 0, 0.5, 1, 0, 1, 2, 1, 8, 5.0, 80, 60, 2, 50, 30, 2, 5);
+        MyStrategy strategy = new MyStrategy();
+        for (int run = 0; run < 3; run++) {
+            // The first turn teaches the army the order of its troopers, the next ones are played with it known
+            for (int moveIndex = 3 * run; moveIndex < 3 * run + 2; moveIndex++) {
+                World world = world(moveIndex);
+                for (TrooperType type : ORDER) {
+                    Trooper self = find(world, type);
+                    Move move = new Move();
+                    long start = System.nanoTime();
+                    strategy.move(self, world, game, move);
+                    long millis = (System.nanoTime() - start) / 1000000;
+                    if (moveIndex > 3 * run && move.getAction() == ActionType.END_TURN) {
+                        throw new AssertionError(type + " ended the turn with " + self.getActionPoints() + " action points in " +
+                                millis + " ms");
+                    }
+                }
+            }
+        }
+        System.out.println("OK");
+    }
+
+    @NotNull
+    private static World world(int moveIndex) {
+        CellType[][] cells = new CellType[WIDTH][HEIGHT];
+        for (CellType[] column : cells) {
+            Arrays.fill(column, CellType.FREE);
+        }
+        boolean[] visibilities = new boolean[WIDTH * HEIGHT * WIDTH * HEIGHT * 3];
+        Arrays.fill(visibilities, true);
+
+        List<Trooper> troopers = new ArrayList<>();
+        for (int i = 0; i < ORDER.length; i++) {
+            troopers.add(trooper(i + 1, 10, 8 + i, 1, i, true, ORDER[i]));
+        }
+        for (int i = 0; i < 6; i++) {
+            troopers.add(trooper(10 + i, 14, 7 + i, 2 + i % 2, i / 2, false, ORDER[i % ORDER.length]));
+        }
+        return new World(moveIndex, WIDTH, HEIGHT, new Player[0], troopers.toArray(new Trooper[troopers.size()]), new Bonus[0],
+                cells, visibilities);
+    }
+
+    @NotNull
+    private static Trooper trooper(long id, int x, int y, long playerId, int index, boolean teammate, @NotNull TrooperType type) {
+        int actionPoints = type == TrooperType.COMMANDER || type == TrooperType.SNIPER ? 10 : 12;
+        double shootingRange = type == TrooperType.SNIPER ? 10 : type == TrooperType.FIELD_MEDIC ? 5 : 7;
+        return new Trooper(id, x, y, playerId, index, teammate, type, TrooperStance.STANDING, 100, 100, actionPoints,
+                actionPoints, 8, shootingRange, 3, 15, 20, 25, 15, true, true, true);
+    }
+
+    @NotNull
+    private static Trooper find(@NotNull World world, @NotNull TrooperType type) {
+        for (Trooper trooper : world.getTroopers()) {
+            if (trooper.isTeammate() && trooper.getType() == type) return trooper;
+        }
+        throw new IllegalStateException("No " + type);
+    }
+}